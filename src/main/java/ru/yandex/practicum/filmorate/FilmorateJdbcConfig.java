@@ -20,22 +20,12 @@ public class FilmorateJdbcConfig {
                 .usingGeneratedKeyColumns("id");
     }
 
-    @Bean
-    public SimpleJdbcInsert filmsLikesJdbcInsert(JdbcTemplate jdbcTemplate) {
-        return new SimpleJdbcInsert(jdbcTemplate).withTableName("users_films_likes");
-    }
-
     @Bean
     public SimpleJdbcInsert usersJdbcInsert(JdbcTemplate jdbcTemplate) {
         return new SimpleJdbcInsert(jdbcTemplate).withTableName("users")
                 .usingGeneratedKeyColumns("id");
     }
 
-    @Bean
-    public SimpleJdbcInsert friendsRequestsJdbcInsert(JdbcTemplate jdbcTemplate) {
-        return new SimpleJdbcInsert(jdbcTemplate).withTableName("users_friends_requests");
-    }
-
     @Bean
     public SimpleJdbcInsert reviewsJdbcInsert(JdbcTemplate jdbcTemplate) {
         return new SimpleJdbcInsert(jdbcTemplate).withTableName("reviews")
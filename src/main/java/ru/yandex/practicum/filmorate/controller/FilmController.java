@@ -1,22 +1,53 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collection;
+import java.util.List;
 
 @RestController
 @RequestMapping("/films")
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final ObjectMapper objectMapper;
 
+    // GET /films?after={filmId}&limit={limit} - постраничная выдача по id (keyset pagination)
     @GetMapping
-    public Collection<Film> getAll() {
-        return filmService.getAll();
+    public Collection<Film> getAll(@RequestParam(required = false) Integer after,
+                                   @RequestParam(required = false) Integer limit) {
+        if (after == null && limit == null) {
+            return filmService.getAll();
+        }
+        return filmService.getPage(after, limit);
+    }
+
+    // GET /films/stream - весь каталог, сериализуемый в ответ по мере чтения из БД
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        return outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                filmService.streamAll(film -> {
+                    try {
+                        objectMapper.writeValue(generator, film);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            }
+        };
     }
 
     @GetMapping("/{filmId}")
@@ -64,9 +95,25 @@ public class FilmController {
         return filmService.filmsCommon(userId, friendId);
     }
 
+    // GET /films/common?userIds={id1,id2,...}&minLikes={k} - фильмы, которые лайкнули не менее k пользователей группы
+    @GetMapping(value = "/common", params = "userIds")
+    public Collection<Film> filmsCommon(@RequestParam List<Integer> userIds,
+                                        @RequestParam(required = false) Integer minLikes) {
+        return filmService.filmsCommon(userIds, minLikes);
+    }
+
+    // GET /films/{filmId}/similar?count={count} - фильмы, которые лайкают вместе с данным
+    @GetMapping("/{filmId}/similar")
+    public Collection<Film> filmsSimilar(@PathVariable int filmId,
+                                         @RequestParam(required = false) Integer count) {
+        return filmService.filmsSimilar(filmId, count);
+    }
+
     @GetMapping("/search")
-    public Collection<Film> filmsSearch(@RequestParam String query, @RequestParam String by) {
-        return filmService.filmSearch(query, by);
+    public Collection<Film> filmsSearch(@RequestParam String query, @RequestParam String by,
+                                        @RequestParam(required = false) Integer limit,
+                                        @RequestParam(required = false) Integer offset) {
+        return filmService.filmSearch(query, by, limit, offset);
     }
 
     //Возвращает список фильмов режиссера отсортированных по количеству лайков или году выпуска
@@ -2,12 +2,16 @@ package ru.yandex.practicum.filmorate.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.service.UserService;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 
 
@@ -15,6 +19,7 @@ import java.util.Collection;
 @RequestMapping("/users")
 @RequiredArgsConstructor
 public class UserController {
+    static final String RECOMMENDATIONS_AGE_HEADER = "X-Recommendations-Age-Ms";
     private final UserService userService;
 
     @GetMapping
@@ -62,13 +67,45 @@ public class UserController {
         return userService.getCommonFriends(userId, otherId);
     }
 
+    // GET /users/{id}/friends/suggestions?count={count} - друзья друзей по числу общих друзей
+    @GetMapping("/{userId}/friends/suggestions")
+    public Collection<User> getFriendSuggestions(@PathVariable int userId,
+                                                 @RequestParam(required = false) Integer count) {
+        return userService.getFriendSuggestions(userId, count);
+    }
+
+    // GET /users/{id}/distance/{otherId} - кратчайшая цепочка друзей от id до otherId включительно;
+    // пустой список, если цепочки не длиннее 6 рукопожатий нет
+    @GetMapping("/{userId}/distance/{otherId}")
+    public Collection<User> getFriendshipPath(@PathVariable int userId, @PathVariable int otherId) {
+        return userService.getFriendshipPath(userId, otherId);
+    }
+
+    // GET /users/{id}/feed?after={eventId}&limit={limit} - постраничная выдача ленты
+    // GET /users/{id}/feed?since={eventId} - только события новее уже полученных клиентом
+    // GET /users/{id}/feed?archived=true&after={eventId}&limit={limit} - события, перенесенные в архив
     @GetMapping("/{id}/feed")
-    public Collection<FeedEvent> getUserFeed(@PathVariable Integer id) {
-        return userService.getUserFeed(id);
+    public Collection<FeedEvent> getUserFeed(@PathVariable Integer id,
+                                             @RequestParam(required = false) Integer after,
+                                             @RequestParam(required = false) Integer since,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(defaultValue = "false") boolean archived) {
+        if (archived) {
+            return userService.getArchivedUserFeed(id, after, limit);
+        }
+        if (after == null && since == null && limit == null) {
+            return userService.getUserFeed(id);
+        }
+        return userService.getUserFeed(id, after, since, limit);
     }
 
+    // В заголовке X-Recommendations-Age-Ms - сколько миллисекунд назад были рассчитаны рекомендации
     @GetMapping("/{userId}/recommendations")
-    public Collection<Film> getRecommendations(@PathVariable int userId) {
-        return userService.getRecommendations(userId);
+    public ResponseEntity<Collection<Film>> getRecommendations(@PathVariable int userId) {
+        Recommendations recommendations = userService.getRecommendations(userId);
+        long ageMillis = Duration.between(recommendations.getComputedAt(), Instant.now()).toMillis();
+        return ResponseEntity.ok()
+                .header(RECOMMENDATIONS_AGE_HEADER, String.valueOf(ageMillis))
+                .body(recommendations.getFilms());
     }
 }
@@ -0,0 +1,13 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.Data;
+
+import java.time.Instant;
+import java.util.Collection;
+
+// Рекомендованные фильмы и время, когда они были рассчитаны
+@Data
+public class Recommendations {
+    private final Collection<Film> films;
+    private final Instant computedAt;
+}
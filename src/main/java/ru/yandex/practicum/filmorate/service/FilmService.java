@@ -12,13 +12,21 @@ import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FilmService {
     private static final int DEFAULT_FILMS_POPULAR_COUNT = 10;
+    private static final int DEFAULT_FILMS_SIMILAR_COUNT = 10;
+    private static final int MAX_FILMS_SIMILAR_COUNT = 20;
+    private static final int MAX_FILMS_COMMON_USERS = 100;
+    private static final int DEFAULT_FILMS_PAGE_SIZE = 100;
+    private static final int MAX_FILMS_PAGE_SIZE = 1000;
     private final FilmStorage filmStorage;
     private final UserStorage userStorage;
     private final ReviewStorage reviewStorage;
@@ -29,6 +37,21 @@ public class FilmService {
         return filmStorage.getAll();
     }
 
+    public Collection<Film> getPage(Integer afterId, Integer limit) {
+        afterId = afterId != null ? afterId : 0;
+        limit = limit != null ? limit : DEFAULT_FILMS_PAGE_SIZE;
+        if (limit <= 0 || limit > MAX_FILMS_PAGE_SIZE) {
+            String reason = String.format("limit must be between 1 and %d", MAX_FILMS_PAGE_SIZE);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        return filmStorage.getPage(afterId, limit);
+    }
+
+    public void streamAll(Consumer<Film> consumer) {
+        filmStorage.streamAll(consumer);
+    }
+
     public Film getById(int id) {
         return filmStorage.getById(id);
     }
@@ -61,7 +84,6 @@ public class FilmService {
     }
 
     public void addLike(int filmId, int userId) {
-        userStorage.getById(userId);
         filmStorage.addLike(filmId, userId);
     }
 
@@ -80,7 +102,34 @@ public class FilmService {
         return filmStorage.filmsCommon(userId, friendId);
     }
 
-    public Collection<Film> filmSearch(String searchTitle, String by) {
+    // Без minLikes фильм должен понравиться всем пользователям группы
+    public Collection<Film> filmsCommon(List<Integer> userIds, Integer minLikes) {
+        Set<Integer> distinctUserIds = new LinkedHashSet<>(userIds);
+        if (distinctUserIds.isEmpty() || distinctUserIds.size() > MAX_FILMS_COMMON_USERS) {
+            String reason = String.format("userIds must contain between 1 and %d users", MAX_FILMS_COMMON_USERS);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        minLikes = minLikes != null ? minLikes : distinctUserIds.size();
+        if (minLikes <= 0 || minLikes > distinctUserIds.size()) {
+            String reason = String.format("minLikes must be between 1 and %d", distinctUserIds.size());
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        return filmStorage.filmsCommon(distinctUserIds, minLikes);
+    }
+
+    public Collection<Film> filmsSimilar(int filmId, Integer count) {
+        count = count != null ? count : DEFAULT_FILMS_SIMILAR_COUNT;
+        if (count <= 0 || count > MAX_FILMS_SIMILAR_COUNT) {
+            String reason = String.format("count must be between 1 and %d", MAX_FILMS_SIMILAR_COUNT);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        return filmStorage.filmsSimilar(filmId, count);
+    }
+
+    public Collection<Film> filmSearch(String searchTitle, String by, Integer limit, Integer offset) {
         if (by == null || by.isEmpty()) {
             throw new IllegalArgumentException("Film search by is required");
         }
@@ -89,12 +138,17 @@ public class FilmService {
             return filmStorage.getAll();
         }
 
+        if ((limit != null && limit <= 0) || (offset != null && offset < 0)) {
+            String reason = "limit must be positive and offset must not be negative";
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+
         boolean isDirectorSearch = by.contains("director");
         boolean isTitleSearch = by.contains("title");
 
-        return filmStorage.filmSearch(searchTitle, isDirectorSearch, isTitleSearch).stream()
-                .sorted((film1, film2) -> Integer.compare(film2.getLikes(), film1.getLikes()))
-                .collect(Collectors.toList());
+        return filmStorage.filmSearch(searchTitle, isDirectorSearch, isTitleSearch, limit,
+                offset != null ? offset : 0);
     }
 
     public Collection<Film> getFilmsOfDirectors(int directorId, String sortBy) {
@@ -6,9 +6,9 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.review.ReviewStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
@@ -18,9 +18,13 @@ import java.util.Collection;
 @RequiredArgsConstructor
 @Service
 public class UserService {
+    private static final int DEFAULT_FEED_PAGE_SIZE = 100;
+    private static final int MAX_FEED_PAGE_SIZE = 1000;
+    private static final int DEFAULT_FRIEND_SUGGESTIONS_COUNT = 10;
+    private static final int MAX_FRIEND_SUGGESTIONS_COUNT = 100;
     private final UserStorage userStorage;
     private final ReviewStorage reviewStorage;
-    private final FeedDbStorage feedStorage;
+    private final FeedStorage feedStorage;
 
     public Collection<User> getAll() {
         return userStorage.getAll();
@@ -83,7 +87,22 @@ public class UserService {
         return userStorage.getCommonFriends(userId, otherId);
     }
 
-    public Collection<Film> getRecommendations(int userId) {
+    public Collection<User> getFriendSuggestions(int userId, Integer count) {
+        count = count != null ? count : DEFAULT_FRIEND_SUGGESTIONS_COUNT;
+        if (count <= 0 || count > MAX_FRIEND_SUGGESTIONS_COUNT) {
+            String reason = String.format("count must be between 1 and %d", MAX_FRIEND_SUGGESTIONS_COUNT);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        return userStorage.getFriendSuggestions(userId, count);
+    }
+
+    public Collection<User> getFriendshipPath(int userId, int otherId) {
+        return userStorage.getFriendshipPath(userId, otherId);
+    }
+
+    // Рекомендации предрассчитаны и могут отставать от последних лайков, см. RecommendationStore
+    public Recommendations getRecommendations(int userId) {
         return userStorage.getRecommendations(userId);
     }
 
@@ -92,4 +111,40 @@ public class UserService {
         userStorage.getById(userId);
         return feedStorage.getUserFeed(userId);
     }
+
+    /*
+    Постраничная выдача ленты: after — курсор (id последнего события предыдущей страницы),
+    since — id последнего события, которое клиент уже видел; возвращаются только более новые события.
+    Без явного limit страница ограничена DEFAULT_FEED_PAGE_SIZE, выборка since — нет.
+     */
+    public Collection<FeedEvent> getUserFeed(int userId, Integer afterEventId, Integer sinceEventId, Integer limit) {
+        if (afterEventId != null && sinceEventId != null) {
+            String reason = "after and since cannot be used together";
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        if (limit != null && (limit <= 0 || limit > MAX_FEED_PAGE_SIZE)) {
+            String reason = String.format("limit must be between 1 and %d", MAX_FEED_PAGE_SIZE);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        userStorage.getById(userId);
+        if (sinceEventId != null) {
+            return feedStorage.getUserFeed(userId, sinceEventId, limit);
+        }
+        return feedStorage.getUserFeed(userId, afterEventId != null ? afterEventId : 0,
+                limit != null ? limit : DEFAULT_FEED_PAGE_SIZE);
+    }
+
+    // Архивные события читаются с диска, поэтому всегда отдаются страницами
+    public Collection<FeedEvent> getArchivedUserFeed(int userId, Integer afterEventId, Integer limit) {
+        if (limit != null && (limit <= 0 || limit > MAX_FEED_PAGE_SIZE)) {
+            String reason = String.format("limit must be between 1 and %d", MAX_FEED_PAGE_SIZE);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+        userStorage.getById(userId);
+        return feedStorage.getArchivedUserFeed(userId, afterEventId != null ? afterEventId : 0,
+                limit != null ? limit : DEFAULT_FEED_PAGE_SIZE);
+    }
 }
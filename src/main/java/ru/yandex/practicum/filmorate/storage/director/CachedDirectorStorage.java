@@ -0,0 +1,117 @@
+package ru.yandex.practicum.filmorate.storage.director;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.CacheCounters;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Кэш режиссеров поверх DirectorDbStorage. В отличие от жанров и MPA, режиссеры меняются
+через API, поэтому create, update и delete проходят через этот класс и сбрасывают
+соответствующие записи. Счетчик version не дает записать в кэш значение,
+прочитанное из БД до параллельного изменения: проверка счетчика и запись в кэш
+выполняются под той же блокировкой, что и сброс в invalidate.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+@Slf4j
+public class CachedDirectorStorage implements DirectorStorage {
+    private final DirectorDbStorage directorDbStorage;
+    private final CacheCounters counters = new CacheCounters();
+    private final Map<Integer, Director> directors = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private volatile List<Director> allDirectors;
+
+    @Override
+    public Collection<Director> getAll() {
+        List<Director> snapshot = allDirectors;
+        if (snapshot != null) {
+            counters.hit();
+            return snapshot;
+        }
+        counters.miss();
+        long loadVersion = version.get();
+        List<Director> loaded = List.copyOf(directorDbStorage.getAll());
+        cacheIfUnchanged(loadVersion, () -> {
+            loaded.forEach(director -> directors.put(director.getId(), director));
+            allDirectors = loaded;
+        });
+        return loaded;
+    }
+
+    @Override
+    public Director getById(int id) {
+        Director director = directors.get(id);
+        if (director != null) {
+            counters.hit();
+            return director;
+        }
+        counters.miss();
+        long loadVersion = version.get();
+        Director loaded = directorDbStorage.getById(id);
+        cacheIfUnchanged(loadVersion, () -> directors.put(id, loaded));
+        return loaded;
+    }
+
+    @Override
+    public Director create(Director director) {
+        Director created = directorDbStorage.create(director);
+        invalidate(created.getId());
+        return created;
+    }
+
+    @Override
+    public Director update(Director director) {
+        Director updated = directorDbStorage.update(director);
+        invalidate(updated.getId());
+        return updated;
+    }
+
+    @Override
+    public void delete(int directorId) {
+        directorDbStorage.delete(directorId);
+        invalidate(directorId);
+    }
+
+    @Override
+    public void checkDirectorExists(int id) {
+        getById(id);
+    }
+
+    @Override
+    public void checkDirectorsExist(Collection<Integer> ids) {
+        List<Integer> uncachedIds = ids.stream().filter(id -> !directors.containsKey(id)).toList();
+        if (uncachedIds.isEmpty()) {
+            counters.hit();
+            return;
+        }
+        counters.miss();
+        directorDbStorage.checkDirectorsExist(uncachedIds);
+    }
+
+    public CacheCounters getCounters() {
+        return counters;
+    }
+
+    private synchronized void cacheIfUnchanged(long loadVersion, Runnable put) {
+        if (version.get() == loadVersion) {
+            put.run();
+        }
+    }
+
+    private synchronized void invalidate(int directorId) {
+        version.incrementAndGet();
+        directors.remove(directorId);
+        allDirectors = null;
+        log.debug("Director {} evicted from cache, {}", directorId, counters);
+    }
+}
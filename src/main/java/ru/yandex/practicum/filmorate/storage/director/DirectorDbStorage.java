@@ -3,20 +3,28 @@ package ru.yandex.practicum.filmorate.storage.director;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Repository
 @RequiredArgsConstructor
 @Slf4j
 public class DirectorDbStorage implements DirectorStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     /*
     Класс SimpleJdbcInsert из Spring Framework упрощает процесс вставки данных в базу данных.
@@ -29,6 +37,7 @@ public class DirectorDbStorage implements DirectorStorage {
 (если таблица поддерживает автоинкремент).
      */
     private final SimpleJdbcInsert directorsJdbcInsert;
+    private final FilmSearchIndex searchIndex;
     private static final String SELECT_DIRECTORS_QUERY = """
             SELECT id,
                    name
@@ -57,6 +66,7 @@ public class DirectorDbStorage implements DirectorStorage {
         argsMap.put("name", director.getName());
 //выполнение SQL-запроса для вставки данных о режиссере в базу данных и получение сгенерированного идентификатора фильма
         int directorId = directorsJdbcInsert.executeAndReturnKey(argsMap).intValue();
+        AfterCommit.run(() -> searchIndex.putDirector(directorId, director.getName()));
         return new Director(directorId, director.getName());
     }
 
@@ -69,6 +79,7 @@ public class DirectorDbStorage implements DirectorStorage {
                    SET name = ?
                  WHERE id = ?
                 """, director.getName(), director.getId());
+        AfterCommit.run(() -> searchIndex.putDirector(director.getId(), director.getName()));
         return getById(director.getId());
 
     }
@@ -79,6 +90,7 @@ public class DirectorDbStorage implements DirectorStorage {
         checkDirectorExists(directorId);
         jdbcTemplate.update("DELETE FROM films_directors WHERE director_id = ?", directorId);
         jdbcTemplate.update("DELETE FROM directors WHERE id = ?", directorId);
+        AfterCommit.run(() -> searchIndex.removeDirector(directorId));
     }
 
     @Override
@@ -96,4 +108,25 @@ public class DirectorDbStorage implements DirectorStorage {
             throw new NotFoundException(reason);
         }
     }
+
+    @Override
+    public void checkDirectorsExist(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Integer> foundIds = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM directors WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids), Integer.class));
+        List<Integer> missingIds = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .sorted()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            String reason = missingIds.size() == 1
+                    ? String.format("Director with id %d not found", missingIds.getFirst())
+                    : String.format("directors with ids %s not found", missingIds);
+            log.warn("Validation failed: {}", reason);
+            throw new NotFoundException(reason);
+        }
+    }
 }
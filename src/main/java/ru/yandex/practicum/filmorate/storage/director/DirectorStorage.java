@@ -16,4 +16,6 @@ public interface DirectorStorage {
     void delete(int directorId); // DELETE /directors/{id} - Удаление режиссёра
 
     void checkDirectorExists(int id);
+
+    void checkDirectorsExist(Collection<Integer> ids);
 }
@@ -0,0 +1,220 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+Асинхронная запись ленты событий поверх CachedFeedStorage.
+addEvent кладет событие в ограниченную очередь только после фиксации транзакции вызывающего,
+поэтому события откаченных изменений не записываются. Фоновый поток записывает накопленные
+события одним JDBC batch, когда их набирается BATCH_SIZE или проходит FLUSH_INTERVAL_MILLIS.
+Если очередь заполнена, вызывающий поток сам сбрасывает ее в БД — запросы замедляются,
+но события не теряются. При остановке приложения очередь дописывается до конца.
+Чтобы пользователь сразу видел свои действия, getUserFeed сначала сбрасывает очередь,
+если в ней есть события этого пользователя.
+Каждый batch пишется в собственной транзакции (REQUIRES_NEW): сброс из потока запроса
+не попадает в транзакцию запроса, и ее откат не теряет события других пользователей.
+ */
+@Repository
+@Primary
+@Slf4j
+public class BatchingFeedStorage implements FeedStorage {
+    static final int QUEUE_CAPACITY = 10_000;
+    static final int BATCH_SIZE = 200;
+    static final long FLUSH_INTERVAL_MILLIS = 100;
+
+    private final CachedFeedStorage feedStorage;
+    private final TransactionTemplate writeTransaction;
+    private final BlockingQueue<FeedEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Map<Integer, Integer> pendingByUser = new ConcurrentHashMap<>();
+    private final FeedWriterMetrics metrics = new FeedWriterMetrics();
+    private final Lock flushLock = new ReentrantLock();
+    private final Lock signalLock = new ReentrantLock();
+    private final Condition batchReady = signalLock.newCondition();
+    private volatile boolean running;
+    private Thread writer;
+
+    public BatchingFeedStorage(CachedFeedStorage feedStorage, PlatformTransactionManager transactionManager) {
+        this.feedStorage = feedStorage;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "feed-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        wakeUpWriter();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        flush();
+        log.info("Feed writer stopped, {}", metrics);
+    }
+
+    @Override
+    public Collection<FeedEvent> getUserFeed(int userId) {
+        flushPending(userId);
+        return feedStorage.getUserFeed(userId);
+    }
+
+    @Override
+    public Collection<FeedEvent> getUserFeed(int userId, int afterEventId, Integer limit) {
+        flushPending(userId);
+        return feedStorage.getUserFeed(userId, afterEventId, limit);
+    }
+
+    @Override
+    public Collection<FeedEvent> getArchivedUserFeed(int userId, int afterEventId, Integer limit) {
+        return feedStorage.getArchivedUserFeed(userId, afterEventId, limit);
+    }
+
+    @Override
+    public void deleteUserFeed(int userId) {
+        flushPending(userId);
+        feedStorage.deleteUserFeed(userId);
+    }
+
+    @Override
+    public void addEvent(FeedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            enqueue(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                enqueue(event);
+            }
+        });
+    }
+
+    /*
+    Записывает все события, накопленные в очереди к моменту вызова.
+    Сброс выполняется под блокировкой, поэтому события попадают в БД в порядке добавления.
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<FeedEvent> batch = new ArrayList<>(BATCH_SIZE);
+            while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+                write(batch);
+                batch.clear();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public FeedWriterMetrics getMetrics() {
+        return metrics;
+    }
+
+    private void flushPending(int userId) {
+        if (pendingByUser.containsKey(userId)) {
+            flush();
+        }
+    }
+
+    private void enqueue(FeedEvent event) {
+        pendingByUser.merge(event.getUserId(), 1, Integer::sum);
+        if (!queue.offer(event)) {
+            metrics.backpressure();
+            do {
+                flush();
+            } while (!queue.offer(event));
+        }
+        if (!running) {
+            flush();
+        } else if (queue.size() >= BATCH_SIZE) {
+            wakeUpWriter();
+        }
+    }
+
+    private void writeLoop() {
+        while (running) {
+            signalLock.lock();
+            try {
+                if (running && queue.size() < BATCH_SIZE) {
+                    batchReady.await(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                signalLock.unlock();
+            }
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error("Feed writer failed to flush events", e);
+            }
+        }
+    }
+
+    private void wakeUpWriter() {
+        signalLock.lock();
+        try {
+            batchReady.signal();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    /*
+    Если batch не записался целиком (например, пользователь был удален, пока его события
+    ждали в очереди), события записываются по одному, а не проходящие по ограничениям пропускаются.
+     */
+    private void write(List<FeedEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            writeTransaction.executeWithoutResult(status -> feedStorage.addEvents(batch));
+        } catch (DataAccessException e) {
+            log.warn("Feed batch of {} events failed, writing events one by one: {}", batch.size(), e.getMessage());
+            for (FeedEvent event : batch) {
+                try {
+                    writeTransaction.executeWithoutResult(status -> feedStorage.addEvent(event));
+                } catch (DataAccessException eventException) {
+                    metrics.dropped();
+                    log.warn("Feed event {} dropped: {}", event, eventException.getMessage());
+                }
+            }
+        } finally {
+            batch.forEach(event -> pendingByUser.computeIfPresent(event.getUserId(),
+                    (userId, count) -> count > 1 ? count - 1 : null));
+        }
+        metrics.flushed(batch.size(), System.nanoTime() - start);
+        log.debug("Feed events flushed: {}, queue depth {}", metrics, queue.size());
+    }
+}
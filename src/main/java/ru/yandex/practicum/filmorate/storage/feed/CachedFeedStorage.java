@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.CacheCounters;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Кэш последних событий ленты поверх FeedDbStorage. Для каждого пользователя, чью ленту недавно
+читали, хранится FeedRingBuffer с последними EVENTS_PER_USER событиями; новые события дописываются
+в буфер после записи в БД. Запросы более старых страниц и лент пользователей, которых нет в кэше,
+идут в БД (для холодного пользователя буфер при этом заполняется).
+Суммарный оценочный размер буферов ограничен MEMORY_BUDGET_BYTES, при превышении вытесняются
+пользователи, к чьим лентам дольше всего не обращались.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class CachedFeedStorage implements FeedStorage {
+    static final int EVENTS_PER_USER = 50;
+    static final long MEMORY_BUDGET_BYTES = 16L * 1024 * 1024;
+
+    private final FeedDbStorage feedDbStorage;
+    private final CacheCounters counters = new CacheCounters();
+    private final Map<Integer, FeedRingBuffer> buffers = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    // Меняется при записи событий пользователя, которого нет в кэше: загруженный до этого буфер устарел
+    private long version;
+
+    @Override
+    public Collection<FeedEvent> getUserFeed(int userId) {
+        return getUserFeed(userId, 0, null);
+    }
+
+    @Override
+    public Collection<FeedEvent> getUserFeed(int userId, int afterEventId, Integer limit) {
+        FeedRingBuffer buffer;
+        long loadVersion;
+        synchronized (this) {
+            buffer = buffers.get(userId);
+            if (buffer != null && buffer.covers(afterEventId)) {
+                counters.hit();
+                return buffer.read(afterEventId, limit);
+            }
+            counters.miss();
+            loadVersion = version;
+        }
+        if (buffer != null) {
+            return feedDbStorage.getUserFeed(userId, afterEventId, limit);
+        }
+
+        List<FeedEvent> recent = feedDbStorage.getRecentUserFeed(userId, EVENTS_PER_USER);
+        FeedRingBuffer loaded = new FeedRingBuffer(userId, recent, recent.size() < EVENTS_PER_USER, EVENTS_PER_USER);
+        Collection<FeedEvent> result = loaded.covers(afterEventId)
+                ? loaded.read(afterEventId, limit)
+                : feedDbStorage.getUserFeed(userId, afterEventId, limit);
+        synchronized (this) {
+            if (version == loadVersion && !buffers.containsKey(userId)) {
+                buffers.put(userId, loaded);
+                cachedBytes += loaded.estimatedBytes();
+                evictColdUsers();
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Collection<FeedEvent> getArchivedUserFeed(int userId, int afterEventId, Integer limit) {
+        return feedDbStorage.getArchivedUserFeed(userId, afterEventId, limit);
+    }
+
+    @Override
+    public void addEvent(FeedEvent event) {
+        feedDbStorage.addEvent(event);
+        afterCommit(List.of(event));
+    }
+
+    public void addEvents(List<FeedEvent> events) {
+        feedDbStorage.addEvents(events);
+        afterCommit(List.copyOf(events));
+    }
+
+    @Override
+    public void deleteUserFeed(int userId) {
+        feedDbStorage.deleteUserFeed(userId);
+        synchronized (this) {
+            evict(userId);
+        }
+    }
+
+    public synchronized void evict(Collection<Integer> usersIds) {
+        usersIds.forEach(this::evict);
+    }
+
+    public CacheCounters getCounters() {
+        return counters;
+    }
+
+    public synchronized int getCachedUsers() {
+        return buffers.size();
+    }
+
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    // Внутри транзакции события попадают в буферы только после ее фиксации
+    private void afterCommit(List<FeedEvent> events) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(events);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(events);
+            }
+        });
+    }
+
+    private synchronized void append(List<FeedEvent> events) {
+        for (FeedEvent event : events) {
+            FeedRingBuffer buffer = buffers.get(event.getUserId());
+            if (buffer == null) {
+                version++;
+            } else if (event.getEventId() == null) {
+                evict(event.getUserId());
+            } else {
+                cachedBytes -= buffer.estimatedBytes();
+                buffer.append(event);
+                cachedBytes += buffer.estimatedBytes();
+            }
+        }
+        evictColdUsers();
+    }
+
+    private void evict(int userId) {
+        version++;
+        FeedRingBuffer buffer = buffers.remove(userId);
+        if (buffer != null) {
+            cachedBytes -= buffer.estimatedBytes();
+        }
+    }
+
+    private void evictColdUsers() {
+        Iterator<FeedRingBuffer> iterator = buffers.values().iterator();
+        while (cachedBytes > MEMORY_BUDGET_BYTES && iterator.hasNext()) {
+            cachedBytes -= iterator.next().estimatedBytes();
+            iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+Архив старых событий ленты на локальном диске. Каждый вызов write создает новый сегмент —
+сжатый gzip файл с событиями в порядке возрастания event_id; в имени сегмента записан диапазон
+его event_id, в заголовке — отсортированный список id пользователей, чьи события в нем есть.
+Список держится в памяти, поэтому read открывает только сегменты с событиями пользователя
+(сегменты версии 1 без списка читаются всегда).
+Сегменты только добавляются; изменяются они лишь в deleteUser, который атомарно подменяет файл
+копией без событий пользователя, так что чтение не блокируется и видит старый или новый файл целиком.
+Если процесс остановился между записью сегмента и удалением событий из БД, те же события
+попадут в следующий сегмент; при чтении повторы отбрасываются.
+ */
+@Component
+@Slf4j
+public class FeedArchive {
+    private static final int SEGMENT_FORMAT_VERSION = 2;
+    private static final int USERLESS_SEGMENT_FORMAT_VERSION = 1;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("feed-(\\d+)-(\\d+)\\.seg\\.gz");
+
+    private final Path directory;
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    // Пользователи, удаленные во время работы процесса: их события не попадают в новые сегменты
+    private final Set<Integer> deletedUsers = ConcurrentHashMap.newKeySet();
+
+    public FeedArchive(@Value("${filmorate.feed.archive.dir:./db/feed-archive}") String directory) {
+        this.directory = Path.of(directory);
+        if (Files.isDirectory(this.directory)) {
+            try (Stream<Path> files = Files.list(this.directory)) {
+                files.forEach(this::load);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Сохраняет события, отсортированные по возрастанию event_id, в новый сегмент
+    public synchronized void write(List<FeedEvent> events) throws IOException {
+        List<FeedEvent> kept = events.stream().filter(event -> !deletedUsers.contains(event.getUserId())).toList();
+        if (kept.isEmpty()) {
+            return;
+        }
+        int fromEventId = events.getFirst().getEventId();
+        int toEventId = events.getLast().getEventId();
+        Files.createDirectories(directory);
+        Path segmentPath = directory.resolve(String.format("feed-%010d-%010d.seg.gz", fromEventId, toEventId));
+        int[] userIds = writeSegment(segmentPath, kept);
+        register(new Segment(fromEventId, toEventId, segmentPath, userIds));
+        log.info("Feed archive segment {} written: {} events", segmentPath.getFileName(), kept.size());
+    }
+
+    /*
+    Удаляет из архива все события пользователя: сегменты с его событиями переписываются без них,
+    опустевшие сегменты удаляются. Диапазон event_id в имени сегмента не меняется.
+     */
+    public synchronized void deleteUser(int userId) throws IOException {
+        deletedUsers.add(userId);
+        List<Segment> candidates;
+        synchronized (segments) {
+            candidates = segments.values().stream()
+                    .filter(segment -> segment.mayContain(userId))
+                    .toList();
+        }
+        int deleted = 0;
+        for (Segment segment : candidates) {
+            List<FeedEvent> events = readSegment(segment.path());
+            List<FeedEvent> kept = events.stream().filter(event -> event.getUserId() != userId).toList();
+            deleted += events.size() - kept.size();
+            if (kept.isEmpty()) {
+                synchronized (segments) {
+                    segments.remove(segment.fromEventId());
+                }
+                Files.deleteIfExists(segment.path());
+            } else if (kept.size() < events.size() || segment.userIds() == null) {
+                int[] userIds = writeSegment(segment.path(), kept);
+                synchronized (segments) {
+                    segments.put(segment.fromEventId(),
+                            new Segment(segment.fromEventId(), segment.toEventId(), segment.path(), userIds));
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("Feed archive: {} events of user {} deleted", deleted, userId);
+        }
+    }
+
+    /*
+    Архивные события пользователя с event_id больше afterEventId в порядке возрастания,
+    не более limit штук (null — без ограничения). Читаются только сегменты,
+    диапазон которых заканчивается после afterEventId и в которых есть события пользователя.
+     */
+    public List<FeedEvent> read(int userId, int afterEventId, Integer limit) {
+        List<Segment> candidates;
+        synchronized (segments) {
+            candidates = segments.values().stream()
+                    .filter(segment -> segment.toEventId() > afterEventId && segment.mayContain(userId))
+                    .toList();
+        }
+        NavigableMap<Integer, FeedEvent> result = new TreeMap<>();
+        for (Segment segment : candidates) {
+            if (limit != null && result.size() >= limit && result.lastKey() < segment.fromEventId()) {
+                break;
+            }
+            for (FeedEvent event : readSegment(segment.path())) {
+                if (event.getUserId() == userId && event.getEventId() > afterEventId) {
+                    result.put(event.getEventId(), event);
+                }
+            }
+        }
+        List<FeedEvent> events = new ArrayList<>(result.values());
+        return limit != null && events.size() > limit ? events.subList(0, limit) : events;
+    }
+
+    // Наибольший event_id, попавший в архив, или 0, если архив пуст
+    public int getArchivedUpTo() {
+        synchronized (segments) {
+            return segments.values().stream().mapToInt(Segment::toEventId).max().orElse(0);
+        }
+    }
+
+    private void load(Path path) {
+        Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+        if (!matcher.matches()) {
+            return;
+        }
+        register(new Segment(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), path,
+                readUserIds(path)));
+    }
+
+    private void register(Segment segment) {
+        synchronized (segments) {
+            segments.merge(segment.fromEventId(), segment, (a, b) -> a.toEventId() >= b.toEventId() ? a : b);
+        }
+    }
+
+    // Пишет сегмент во временный файл и атомарно переносит его в path; возвращает id пользователей сегмента
+    private int[] writeSegment(Path path, List<FeedEvent> events) throws IOException {
+        int[] userIds = events.stream().mapToInt(FeedEvent::getUserId).distinct().sorted().toArray();
+        Path tempPath = Files.createTempFile(directory, "feed-", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(tempPath))))) {
+            out.writeInt(SEGMENT_FORMAT_VERSION);
+            out.writeInt(userIds.length);
+            for (int userId : userIds) {
+                out.writeInt(userId);
+            }
+            out.writeInt(events.size());
+            for (FeedEvent event : events) {
+                out.writeInt(event.getEventId());
+                out.writeInt(event.getUserId());
+                out.writeUTF(event.getEventType().name());
+                out.writeUTF(event.getOperation().name());
+                out.writeInt(event.getEntityId());
+                out.writeLong(event.getTimestamp().getEpochSecond());
+                out.writeInt(event.getTimestamp().getNano());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempPath);
+            throw e;
+        }
+        Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return userIds;
+    }
+
+    // Читает только заголовок сегмента; для сегментов версии 1 возвращает null
+    private static int[] readUserIds(Path path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            return readHeader(in, path);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read feed archive segment " + path, e);
+        }
+    }
+
+    private static int[] readHeader(DataInputStream in, Path path) throws IOException {
+        int version = in.readInt();
+        if (version == USERLESS_SEGMENT_FORMAT_VERSION) {
+            return null;
+        }
+        if (version != SEGMENT_FORMAT_VERSION) {
+            throw new IOException("unsupported feed segment version " + version + " in " + path);
+        }
+        int[] userIds = new int[in.readInt()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = in.readInt();
+        }
+        return userIds;
+    }
+
+    private static List<FeedEvent> readSegment(Path path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(path))))) {
+            readHeader(in, path);
+            int count = in.readInt();
+            List<FeedEvent> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                events.add(new FeedEvent(in.readInt(),
+                        in.readInt(),
+                        FeedEvent.EventType.valueOf(in.readUTF()),
+                        FeedEvent.Operation.valueOf(in.readUTF()),
+                        in.readInt(),
+                        Instant.ofEpochSecond(in.readLong(), in.readInt())));
+            }
+            return events;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read feed archive segment " + path, e);
+        }
+    }
+
+    // userIds — отсортированные id пользователей сегмента, null для сегментов версии 1
+    private record Segment(int fromEventId, int toEventId, Path path, int[] userIds) {
+        boolean mayContain(int userId) {
+            return userIds == null || Arrays.binarySearch(userIds, userId) >= 0;
+        }
+    }
+}
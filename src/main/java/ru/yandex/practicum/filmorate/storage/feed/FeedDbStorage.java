@@ -1,31 +1,89 @@
 package ru.yandex.practicum.filmorate.storage.feed;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
 
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Repository
 @RequiredArgsConstructor
+@Slf4j
 public class FeedDbStorage implements FeedStorage {
+    private static final String INSERT_EVENT_QUERY = """
+            INSERT INTO user_feeds (created_at, user_id, event_type, operation, entity_id)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+
     private final JdbcTemplate jdbcTemplate;
     private final SimpleJdbcInsert feedJdbcInsert;
+    private final FeedArchive feedArchive;
 
     @Override
     public Collection<FeedEvent> getUserFeed(int userId) {
+        return getUserFeed(userId, 0, null);
+    }
+
+    // Запрос читает только нужный диапазон индекса user_feeds_user_id_event_id_idx
+    @Override
+    public Collection<FeedEvent> getUserFeed(int userId, int afterEventId, Integer limit) {
+        String sql = "SELECT event_id, created_at, user_id, event_type, operation, entity_id " +
+                "FROM user_feeds WHERE user_id = ? AND event_id > ? ORDER BY event_id";
+
+        if (limit == null) {
+            return jdbcTemplate.query(sql, FeedMapper.getInstance(), userId, afterEventId);
+        }
+        return jdbcTemplate.query(sql + " LIMIT ?", FeedMapper.getInstance(), userId, afterEventId, limit);
+    }
+
+    // Последние count событий пользователя в порядке возрастания event_id
+    public List<FeedEvent> getRecentUserFeed(int userId, int count) {
+        String sql = "SELECT event_id, created_at, user_id, event_type, operation, entity_id " +
+                "FROM user_feeds WHERE user_id = ? ORDER BY event_id DESC LIMIT ?";
+
+        return jdbcTemplate.query(sql, FeedMapper.getInstance(), userId, count).reversed();
+    }
+
+    @Override
+    public Collection<FeedEvent> getArchivedUserFeed(int userId, int afterEventId, Integer limit) {
+        return feedArchive.read(userId, afterEventId, limit);
+    }
+
+    // Первые limit событий, созданных раньше cutoff, в порядке возрастания event_id
+    public List<FeedEvent> getEventsCreatedBefore(Instant cutoff, int limit) {
         String sql = "SELECT event_id, created_at, user_id, event_type, operation, entity_id " +
-                "FROM user_feeds WHERE user_id = ?";
+                "FROM user_feeds WHERE created_at < ? ORDER BY event_id LIMIT ?";
+
+        return jdbcTemplate.query(sql, FeedMapper.getInstance(), Timestamp.from(cutoff), limit);
+    }
 
-        return jdbcTemplate.query(sql, FeedMapper.getInstance(), userId);
+    /*
+    Удаляет события из диапазона event_id, созданные раньше cutoff. Для диапазона, полученного
+    из getEventsCreatedBefore с тем же cutoff, удаляются ровно выбранные события.
+     */
+    public int deleteEvents(int fromEventId, int toEventId, Instant cutoff) {
+        return jdbcTemplate.update("DELETE FROM user_feeds WHERE event_id BETWEEN ? AND ? AND created_at < ?",
+                fromEventId, toEventId, Timestamp.from(cutoff));
     }
 
     @Override
     public void addEvent(FeedEvent event) {
+        truncateTimestamp(event);
         Map<String, Object> args = new HashMap<>();
         args.put("created_at", event.getTimestamp());
         args.put("user_id", event.getUserId());
@@ -33,6 +91,63 @@ public class FeedDbStorage implements FeedStorage {
         args.put("operation", event.getOperation().toString());
         args.put("entity_id", event.getEntityId());
 
-        feedJdbcInsert.execute(args);
+        event.setEventId(feedJdbcInsert.executeAndReturnKey(args).intValue());
+    }
+
+    /*
+    Вставка событий одним JDBC batch. Порядок вставки совпадает с порядком в списке,
+    поэтому event_id возрастают в том же порядке, в котором события были созданы.
+    Сгенерированные event_id записываются в события, если драйвер их вернул.
+     */
+    public void addEvents(List<FeedEvent> events) {
+        events.forEach(FeedDbStorage::truncateTimestamp);
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_EVENT_QUERY, new String[]{"event_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        FeedEvent event = events.get(i);
+                        ps.setTimestamp(1, Timestamp.from(event.getTimestamp()));
+                        ps.setInt(2, event.getUserId());
+                        ps.setString(3, event.getEventType().toString());
+                        ps.setString(4, event.getOperation().toString());
+                        ps.setInt(5, event.getEntityId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return events.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != events.size()) {
+            return;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            Object key = keys.get(i).values().iterator().next();
+            events.get(i).setEventId(((Number) key).intValue());
+        }
+    }
+
+    /*
+    created_at хранит микросекунды, а H2 при записи округляет более точное время.
+    Время события обрезается до записи, чтобы в БД, в кэше ленты и в ответе было одно и то же значение.
+     */
+    private static void truncateTimestamp(FeedEvent event) {
+        event.setTimestamp(event.getTimestamp().truncatedTo(ChronoUnit.MICROS));
+    }
+
+    // События пользователя удаляются из БД в текущей транзакции, а из архива — после ее фиксации
+    @Override
+    public void deleteUserFeed(int userId) {
+        jdbcTemplate.update("DELETE FROM user_feeds WHERE user_id = ?", userId);
+        AfterCommit.run(() -> {
+            try {
+                feedArchive.deleteUser(userId);
+            } catch (IOException e) {
+                log.error("Cannot delete archived feed of user {}", userId, e);
+            }
+        });
     }
 }
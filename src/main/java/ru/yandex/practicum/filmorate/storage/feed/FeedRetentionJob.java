@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/*
+Периодически переносит события ленты старше filmorate.feed.retention.max-age-days из user_feeds
+в FeedArchive. События обрабатываются пачками по batch-size в порядке event_id: пачка сначала
+записывается в сегмент архива и только потом удаляется из БД, так что при сбое события не теряются.
+ */
+@Component
+@Slf4j
+public class FeedRetentionJob {
+    private final FeedDbStorage feedDbStorage;
+    private final CachedFeedStorage cachedFeedStorage;
+    private final FeedArchive feedArchive;
+    private final int maxAgeDays;
+    private final int batchSize;
+
+    public FeedRetentionJob(FeedDbStorage feedDbStorage,
+                            CachedFeedStorage cachedFeedStorage,
+                            FeedArchive feedArchive,
+                            @Value("${filmorate.feed.retention.max-age-days:90}") int maxAgeDays,
+                            @Value("${filmorate.feed.retention.batch-size:1000}") int batchSize) {
+        this.feedDbStorage = feedDbStorage;
+        this.cachedFeedStorage = cachedFeedStorage;
+        this.feedArchive = feedArchive;
+        this.maxAgeDays = maxAgeDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.feed.retention.interval-ms:3600000}",
+            fixedDelayString = "${filmorate.feed.retention.interval-ms:3600000}")
+    public void run() {
+        archiveCreatedBefore(Instant.now().minus(maxAgeDays, ChronoUnit.DAYS));
+    }
+
+    // Возвращает количество событий, перенесенных в архив
+    public int archiveCreatedBefore(Instant cutoff) {
+        int archived = 0;
+        while (true) {
+            List<FeedEvent> events = feedDbStorage.getEventsCreatedBefore(cutoff, batchSize);
+            if (events.isEmpty()) {
+                break;
+            }
+            try {
+                feedArchive.write(events);
+            } catch (IOException e) {
+                log.error("Feed retention stopped: cannot write archive segment", e);
+                break;
+            }
+            archived += feedDbStorage.deleteEvents(events.getFirst().getEventId(), events.getLast().getEventId(),
+                    cutoff);
+            cachedFeedStorage.evict(events.stream().map(FeedEvent::getUserId).distinct().toList());
+            if (events.size() < batchSize) {
+                break;
+            }
+        }
+        if (archived > 0) {
+            log.info("Feed retention: {} events created before {} moved to archive", archived, cutoff);
+        }
+        return archived;
+    }
+}
@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Кольцевой буфер последних событий одного пользователя. События хранятся в примитивных массивах
+(id события, id сущности, время в наносекундах от эпохи и тип с операцией в одном байте),
+объекты FeedEvent создаются только при чтении.
+Все события пользователя с event_id больше coveredAfter гарантированно лежат в буфере,
+поэтому запрос с курсором не меньше coveredAfter можно обслужить из памяти.
+Класс не потокобезопасен, синхронизацией занимается CachedFeedStorage.
+ */
+final class FeedRingBuffer {
+    static final int BYTES_PER_EVENT = Integer.BYTES * 2 + Long.BYTES + Byte.BYTES;
+    // Заголовки объекта буфера и четырех массивов, элемент LinkedHashMap и ключ Integer
+    static final int OVERHEAD_BYTES = 160;
+    private static final int MIN_CAPACITY = 4;
+    private static final FeedEvent.EventType[] EVENT_TYPES = FeedEvent.EventType.values();
+    private static final FeedEvent.Operation[] OPERATIONS = FeedEvent.Operation.values();
+
+    private final int userId;
+    private final int maxCapacity;
+    private int[] eventIds;
+    private int[] entityIds;
+    private long[] timestamps;
+    private byte[] kinds;
+    private int head;
+    private int size;
+    private int coveredAfter;
+
+    /*
+    events — последние события пользователя в порядке возрастания event_id.
+    complete — в events есть все события пользователя.
+     */
+    FeedRingBuffer(int userId, List<FeedEvent> events, boolean complete, int maxCapacity) {
+        this.userId = userId;
+        this.maxCapacity = maxCapacity;
+        allocate(Math.min(maxCapacity, Math.max(MIN_CAPACITY, events.size())));
+        coveredAfter = complete || events.isEmpty() ? 0 : events.getFirst().getEventId() - 1;
+        events.forEach(this::append);
+    }
+
+    void append(FeedEvent event) {
+        if (size > 0 && event.getEventId() <= eventIds[index(size - 1)]) {
+            return;
+        }
+        if (size == eventIds.length && size < maxCapacity) {
+            grow();
+        }
+        if (size == eventIds.length) {
+            coveredAfter = eventIds[head];
+            head = (head + 1) % eventIds.length;
+            size--;
+        }
+        int i = index(size);
+        eventIds[i] = event.getEventId();
+        entityIds[i] = event.getEntityId();
+        timestamps[i] = ChronoUnit.NANOS.between(Instant.EPOCH, event.getTimestamp());
+        kinds[i] = (byte) (event.getEventType().ordinal() * OPERATIONS.length + event.getOperation().ordinal());
+        size++;
+    }
+
+    boolean covers(int afterEventId) {
+        return afterEventId >= coveredAfter;
+    }
+
+    // События с event_id больше afterEventId, не более limit штук (null — без ограничения)
+    List<FeedEvent> read(int afterEventId, Integer limit) {
+        int from = 0;
+        while (from < size && eventIds[index(from)] <= afterEventId) {
+            from++;
+        }
+        int to = limit != null ? Math.min(size, from + limit) : size;
+        List<FeedEvent> result = new ArrayList<>(to - from);
+        for (int n = from; n < to; n++) {
+            int i = index(n);
+            result.add(new FeedEvent(eventIds[i], userId,
+                    EVENT_TYPES[kinds[i] / OPERATIONS.length],
+                    OPERATIONS[kinds[i] % OPERATIONS.length],
+                    entityIds[i],
+                    Instant.EPOCH.plusNanos(timestamps[i])));
+        }
+        return result;
+    }
+
+    long estimatedBytes() {
+        return OVERHEAD_BYTES + (long) eventIds.length * BYTES_PER_EVENT;
+    }
+
+    private int index(int n) {
+        return (head + n) % eventIds.length;
+    }
+
+    private void grow() {
+        int[] oldEventIds = eventIds;
+        int[] oldEntityIds = entityIds;
+        long[] oldTimestamps = timestamps;
+        byte[] oldKinds = kinds;
+        int oldHead = head;
+        allocate(Math.min(maxCapacity, oldEventIds.length * 2));
+        for (int n = 0; n < size; n++) {
+            int i = (oldHead + n) % oldEventIds.length;
+            eventIds[n] = oldEventIds[i];
+            entityIds[n] = oldEntityIds[i];
+            timestamps[n] = oldTimestamps[i];
+            kinds[n] = oldKinds[i];
+        }
+        head = 0;
+    }
+
+    private void allocate(int capacity) {
+        eventIds = new int[capacity];
+        entityIds = new int[capacity];
+        timestamps = new long[capacity];
+        kinds = new byte[capacity];
+    }
+}
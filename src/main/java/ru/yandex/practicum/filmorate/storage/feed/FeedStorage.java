@@ -7,6 +7,20 @@ import java.util.Collection;
 public interface FeedStorage {
     Collection<FeedEvent> getUserFeed(int userId);
 
+    /*
+    События пользователя с event_id больше afterEventId в порядке возрастания event_id,
+    не более limit штук (null — без ограничения).
+     */
+    Collection<FeedEvent> getUserFeed(int userId, int afterEventId, Integer limit);
+
+    /*
+    События пользователя, перенесенные в архив FeedRetentionJob, с теми же правилами
+    выборки, что и у getUserFeed.
+     */
+    Collection<FeedEvent> getArchivedUserFeed(int userId, int afterEventId, Integer limit);
+
     void addEvent(FeedEvent event);
 
+    void deleteUserFeed(int userId);
+
 }
@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.storage.feed;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class FeedWriterMetrics {
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong flushedEvents = new AtomicLong();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AtomicLong backpressureWaits = new AtomicLong();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+
+    public void flushed(int events, long nanos) {
+        flushes.incrementAndGet();
+        flushedEvents.addAndGet(events);
+        lastFlushNanos.set(nanos);
+        maxFlushNanos.accumulateAndGet(nanos, Math::max);
+        totalFlushNanos.addAndGet(nanos);
+    }
+
+    public void dropped() {
+        droppedEvents.incrementAndGet();
+    }
+
+    public void backpressure() {
+        backpressureWaits.incrementAndGet();
+    }
+
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    public long getFlushedEvents() {
+        return flushedEvents.get();
+    }
+
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    public long getBackpressureWaits() {
+        return backpressureWaits.get();
+    }
+
+    public double getLastFlushMillis() {
+        return toMillis(lastFlushNanos.get());
+    }
+
+    public double getMaxFlushMillis() {
+        return toMillis(maxFlushNanos.get());
+    }
+
+    public double getAverageFlushMillis() {
+        long count = flushes.get();
+        return count == 0 ? 0 : toMillis(totalFlushNanos.get()) / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("flushes=%d, events=%d, dropped=%d, backpressure=%d, lastFlush=%.2fms, maxFlush=%.2fms",
+                getFlushes(), getFlushedEvents(), getDroppedEvents(), getBackpressureWaits(),
+                getLastFlushMillis(), getMaxFlushMillis());
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -2,9 +2,15 @@ package ru.yandex.practicum.filmorate.storage.film;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,15 +20,20 @@ import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
 import ru.yandex.practicum.filmorate.storage.director.DirectorStorage;
-import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaStorage;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStore;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Repository
 @Primary
@@ -31,81 +42,74 @@ import java.util.*;
 public class FilmDbStorage implements FilmStorage {
 
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final SimpleJdbcInsert filmsJdbcInsert;
-    private final SimpleJdbcInsert filmsLikesJdbcInsert;
     private final UserStorage userStorage;
     private final GenreStorage genreStorage;
     private final MpaStorage mpaStorage;
     private final DirectorStorage directorStorage;
-    private final FeedDbStorage feedDbStorage;
+    private final FeedStorage feedStorage;
+    private final FilmLoader filmLoader;
+    private final FilmPopularityIndex popularityIndex;
+    private final FilmSearchIndex searchIndex;
+    private final LikesIndex likesIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final RecommendationStore recommendationStore;
+    private final FilmSimilarityModel similarityModel;
 
-    /*
-    GROUP_CONCAT — это функция, которая объединяет значения из нескольких строк в одно строковое значение,
-    разделяя их указанным разделителем. В данном случае она используется для объединения
-    идентификаторов жанров (fg.genre_id) в одну строку, разделённую запятой.
-COALESCE — это функция, которая возвращает первое ненулевое значение из списка своих аргументов.
- Если результат GROUP_CONCAT окажется пустым (например, если для фильма нет жанров),
- COALESCE вернёт пустую строку ''.
-     */
-    public static final String SELECT_FILMS_QUERY = """
-                SELECT f.id,
-                       f.name,
-                       f.description,
-                       f.release_date,
-                       f.duration,
-                       f.mpa_id,
-                       m.name AS mpa_name,
-                       COUNT(ufl.film_id) AS likes,
-                       COALESCE(group_concat(fg.genre_id separator ','), '') AS genres_ids,
-                       COALESCE(group_concat(g.name separator ','), '') AS genres_names,
-                       COALESCE(group_concat(fd.director_id separator ','), '') AS directors_ids,
-                       COALESCE(group_concat(d.name separator ','), '') AS directors_names,
-                  FROM films f
-                  JOIN mpa m ON f.mpa_id = m.id
-             LEFT JOIN users_films_likes ufl ON f.id = ufl.film_id
-             LEFT JOIN films_genres fg ON f.id = fg.film_id
-             LEFT JOIN genres g ON fg.genre_id = g.id
-             LEFT JOIN films_directors fd ON f.id = fd.film_id
-             LEFT JOIN directors d ON fd.director_id = d.id
-                       %s
-                 GROUP BY f.id
-                       %s
-            """;
+    private static final FilmLink FILMS_GENRES_LINK = new FilmLink("films_genres", "genre_id");
+    private static final FilmLink FILMS_DIRECTORS_LINK = new FilmLink("films_directors", "director_id");
 
     @Override
     public Collection<Film> getAll() {
-        String query = String.format(SELECT_FILMS_QUERY, "", "");
-        return jdbcTemplate.query(query, FilmMapper.getInstance());
+        return filmLoader.load("", "");
+    }
+
+    @Override
+    public Collection<Film> getPage(int afterId, int limit) {
+        return filmLoader.load("WHERE f.id > ?", "ORDER BY f.id LIMIT ?", afterId, limit);
+    }
+
+    @Override
+    public void streamAll(Consumer<Film> consumer) {
+        filmLoader.stream("", "ORDER BY f.id", consumer);
     }
 
     @Override
     public Film getById(int id) {
         checkFilmExists(id);
-        String query = String.format(SELECT_FILMS_QUERY, "WHERE f.id = ?", "");
-        return jdbcTemplate.queryForObject(query, FilmMapper.getInstance(), id);
+        return filmLoader.load("WHERE f.id = ?", "", id).getFirst();
     }
 
     @Override
     @Transactional//либо все операции будут успешно выполнены, либо ни одна из них не будет применена в случае ошибки.
     public Film create(Film film) {
         mpaStorage.checkMpaExists(film.getMpa().getId());
-//перебирает все жанры, связанные с фильмом, и проверяет существование каждого жанра в хранилище жанров.
-        film.getGenres().forEach(g -> genreStorage.checkGenreExists(g.getId()));
-//перебирает всех режиссеров, связанных с фильмом, и проверяет существование каждого режиссера в хранилище directors.
-        film.getDirectors().forEach(director -> directorStorage.checkDirectorExists(director.getId()));
+        List<Integer> genresIds = genresIds(film);
+        List<Integer> directorsIds = directorsIds(film);
+//проверяет существование всех жанров и всех режиссеров фильма, по одному запросу на каждую связь.
+        genreStorage.checkGenresExist(genresIds);
+        directorStorage.checkDirectorsExist(directorsIds);
         Map<String, Object> argsMap = new HashMap<>();
         argsMap.put("name", film.getName());
         argsMap.put("description", film.getDescription());
         argsMap.put("release_date", film.getReleaseDate());
         argsMap.put("duration", film.getDuration());
         argsMap.put("mpa_id", film.getMpa().getId());
+        argsMap.put("likes_count", 0);
 // выполнение SQL-запроса для вставки данных о фильме в базу данных и получение сгенерированного идентификатора фильма.
         int filmId = filmsJdbcInsert.executeAndReturnKey(argsMap).intValue();
         film.setId(filmId);
         //1.  установка связи между фильмом и его жанрами в базе данных, используя полученный идентификатор фильма.
-        setFilmGenres(filmId, film.getGenres());
+        insertFilmLinks(FILMS_GENRES_LINK, filmId, genresIds);
         //2.  установка связи между фильмом и его режиссерами в базе данных, используя полученный идентификатор фильма.
-        setFilmDirectors(filmId, film.getDirectors());
+        insertFilmLinks(FILMS_DIRECTORS_LINK, filmId, directorsIds);
+        int releaseYear = film.getReleaseDate().getYear();
+        String name = film.getName();
+        AfterCommit.run(() -> {
+            popularityIndex.put(filmId, releaseYear, genresIds);
+            searchIndex.putFilm(filmId, name, directorsIds);
+        });
         return getById(filmId);
     }
 
@@ -114,10 +118,11 @@ COALESCE — это функция, которая возвращает перв
     public Film update(Film film) {
         checkFilmExists(film.getId());
         mpaStorage.checkMpaExists(film.getMpa().getId());
-        //перебирает все жанры, связанные с фильмом, и проверяет существование каждого жанра в хранилище жанров.
-        film.getGenres().forEach(g -> genreStorage.checkGenreExists(g.getId()));
-        //перебирает таблицу с режиссерами, связанные с фильмом, и проверяет существование каждого режиссера в хранилище.
-        film.getDirectors().forEach(director -> directorStorage.checkDirectorExists(director.getId()));
+        List<Integer> genresIds = genresIds(film);
+        List<Integer> directorsIds = directorsIds(film);
+        //проверяет существование всех жанров и всех режиссеров фильма, по одному запросу на каждую связь.
+        genreStorage.checkGenresExist(genresIds);
+        directorStorage.checkDirectorsExist(directorsIds);
         jdbcTemplate.update("""
                           UPDATE films
                           SET name = ?,
@@ -128,10 +133,15 @@ COALESCE — это функция, которая возвращает перв
                         WHERE id = ?
                         """, film.getName(), film.getDescription(), film.getReleaseDate(),
                 film.getDuration(), film.getMpa().getId(), film.getId());
-        jdbcTemplate.update("DELETE FROM films_genres WHERE film_id = ?", film.getId());
-        jdbcTemplate.update("DELETE FROM films_directors WHERE film_id = ?", film.getId());
-        setFilmGenres(film.getId(), film.getGenres());
-        setFilmDirectors(film.getId(), film.getDirectors());
+        updateFilmLinks(FILMS_GENRES_LINK, film.getId(), genresIds);
+        updateFilmLinks(FILMS_DIRECTORS_LINK, film.getId(), directorsIds);
+        int filmId = film.getId();
+        int releaseYear = film.getReleaseDate().getYear();
+        String name = film.getName();
+        AfterCommit.run(() -> {
+            popularityIndex.put(filmId, releaseYear, genresIds);
+            searchIndex.putFilm(filmId, name, directorsIds);
+        });
         return getById(film.getId());
     }
 
@@ -143,34 +153,108 @@ COALESCE — это функция, которая возвращает перв
         jdbcTemplate.update("DELETE FROM users_films_likes WHERE film_id = ?", filmId);
         jdbcTemplate.update("DELETE FROM films_directors WHERE film_id = ?", filmId);
         jdbcTemplate.update("DELETE FROM films WHERE id = ?", filmId);
+        AfterCommit.run(() -> {
+            popularityIndex.remove(filmId);
+            searchIndex.removeFilm(filmId);
+            likesIndex.removeFilm(filmId);
+            recommendationEngine.removeFilm(filmId);
+        });
     }
 
+    /*
+    Лайк ставится без предварительных проверок: повторный лайк отсекается первичным ключом,
+    а отсутствие фильма или пользователя обнаруживается по нарушению внешнего ключа.
+    Дополнительные запросы для формирования сообщения об ошибке выполняются только в этом случае.
+    Повтор лайка, уже известного LikesIndex, не доходит до INSERT.
+    Новый лайк — два запроса в транзакции: INSERT и UPDATE likes_count. Счетчик нельзя совместить
+    с INSERT одним запросом в H2, а читают его запросы популярных фильмов и FilmLoader.
+    Событие ленты в транзакцию не входит: BatchingFeedStorage пишет его после фиксации в общем batch.
+     */
     @Override
+    @Transactional
     public void addLike(int filmId, int userId) {
-        checkFilmExists(filmId);
-        userStorage.checkUserExists(userId);
-        feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, filmId));
-        if (userFilmLikeExists(filmId, userId)) {
+        if (likesIndex.contains(userId, filmId)) {
+            feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, filmId));
             return;
         }
-        Map<String, Object> argsMap = new HashMap<>();
-        argsMap.put("film_id", filmId);
-        argsMap.put("user_id", userId);
-        filmsLikesJdbcInsert.execute(argsMap);
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(
+                    "INSERT INTO users_films_likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        } catch (DuplicateKeyException e) {
+            inserted = 0;
+        } catch (DataIntegrityViolationException e) {
+            checkFilmExists(filmId);
+            userStorage.checkUserExists(userId);
+            throw e;
+        }
+        if (inserted > 0) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+            AfterCommit.run(() -> {
+                popularityIndex.changeLikes(filmId, 1);
+                likesIndex.add(userId, filmId);
+                recommendationEngine.addLike(userId, filmId);
+                recommendationStore.markChanged(userId);
+            });
+        }
+        feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, filmId));
     }
 
     @Override
+    @Transactional
     public void deleteLike(int filmId, int userId) {
         checkFilmExists(filmId);
         userStorage.checkUserExists(userId);
-        jdbcTemplate.update("""
+        int deleted = jdbcTemplate.update("""
                 DELETE
                   FROM users_films_likes
                  WHERE film_id = ?
                    AND user_id = ?
                 """, filmId, userId);
+        if (deleted > 0) {
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE id = ?", filmId);
+            AfterCommit.run(() -> {
+                popularityIndex.changeLikes(filmId, -1);
+                likesIndex.remove(userId, filmId);
+                recommendationEngine.removeLike(userId, filmId);
+                recommendationStore.markChanged(userId);
+            });
+        }
 
-        feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.REMOVE, filmId));
+        feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.REMOVE, filmId));
+    }
+
+    /*
+    Сверяет films.likes_count с фактическим числом строк в users_films_likes и исправляет расхождения.
+    Используется как разовое заполнение колонки после миграции и как проверка согласованности.
+    Возвращает количество исправленных фильмов.
+     */
+    @Override
+    @Transactional
+    public int repairLikesCount() {
+        int repaired = jdbcTemplate.update("""
+                UPDATE films f
+                   SET likes_count = (SELECT COUNT(*)
+                                        FROM users_films_likes ufl
+                                       WHERE ufl.film_id = f.id)
+                 WHERE likes_count <> (SELECT COUNT(*)
+                                         FROM users_films_likes ufl
+                                        WHERE ufl.film_id = f.id)
+                """);
+        if (repaired > 0) {
+            log.warn("Likes count drift repaired for {} films", repaired);
+        }
+        return repaired;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        repairLikesCount();
+        popularityIndex.rebuild();
+        searchIndex.rebuild();
+        likesIndex.rebuild();
+        recommendationEngine.rebuild();
+        similarityModel.rebuild();
     }
 
     /*
@@ -179,8 +263,25 @@ COALESCE — это функция, которая возвращает перв
     */
     @Override
     public Collection<Film> filmsPopular(Integer genreId, String year, Integer count) {
+        Integer releaseYear = parseYear(year);
+        List<Integer> filmIds = popularityIndex.top(genreId, releaseYear, count);
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Film> filmsById = loadByIds(filmIds);
+        return filmIds.stream()
+                .filter(filmsById::containsKey)
+                .map(filmsById::get)
+                .toList();
+    }
+
+    /*
+    Построение топа популярных фильмов средствами SQL, без индекса в памяти.
+    Используется для сверки с FilmPopularityIndex.
+     */
+    public Collection<Film> filmsPopularFromDb(Integer genreId, String year, Integer count) {
         String requirementOrder = String.format(
-                "ORDER BY likes DESC LIMIT %d ", count);
+                "ORDER BY f.likes_count DESC, f.id LIMIT %d ", count);
         String requirement = String.format("""
                 WHERE f.id IN
                      (
@@ -210,26 +311,53 @@ COALESCE — это функция, которая возвращает перв
         if (year == null && genreId == null) {
             requirement = "";
         }
-        String query = String.format(SELECT_FILMS_QUERY, requirement, requirementOrder);
-        return jdbcTemplate.query(query, FilmMapper.getInstance());
+        return filmLoader.load(requirement, requirementOrder);
     }
 
     @Override
     public Collection<Film> filmsCommon(int userId, int friendId) {
-        userStorage.checkUserExists(userId);
-        userStorage.checkUserExists(friendId);
-        String query = String.format(SELECT_FILMS_QUERY, """
-                WHERE f.id IN (
-                    (SELECT film_id
-                       FROM users_films_likes
-                      WHERE user_id = ?)
-                  INTERSECT
-                    (SELECT film_id
-                       FROM users_films_likes
-                      WHERE user_id = ?)
-                )
-                """, "ORDER BY likes DESC");
-        return jdbcTemplate.query(query, FilmMapper.getInstance(), userId, friendId);
+        List<Integer> userIds = userId == friendId ? List.of(userId) : List.of(userId, friendId);
+        return filmsCommon(userIds, userIds.size());
+    }
+
+    /*
+    GET /films/common?userIds={id1,id2,...}&minLikes={k}
+    Фильмы, которые лайкнули не менее minLikes пользователей группы, по LikesIndex;
+    из БД загружаются только найденные фильмы. Порядок — по убыванию числа лайков, затем по id.
+     */
+    @Override
+    public Collection<Film> filmsCommon(Collection<Integer> userIds, int minLikes) {
+        userStorage.checkUsersExist(userIds);
+        int[] filmIds = likesIndex.commonFilms(userIds, minLikes);
+        if (filmIds.length == 0) {
+            return List.of();
+        }
+        Map<Integer, Film> filmsById = loadByIds(Arrays.stream(filmIds).boxed().toList());
+        return Arrays.stream(filmIds)
+                .boxed()
+                .sorted(Comparator.comparingInt(likesIndex::likesCount).reversed()
+                        .thenComparing(Comparator.naturalOrder()))
+                .filter(filmsById::containsKey)
+                .map(filmsById::get)
+                .toList();
+    }
+
+    /*
+    GET /films/{filmId}/similar?count={count}
+    Фильмы, которые чаще всего лайкали вместе с данным, по FilmSimilarityModel.
+     */
+    @Override
+    public Collection<Film> filmsSimilar(int filmId, int count) {
+        checkFilmExists(filmId);
+        List<Integer> filmIds = similarityModel.similar(filmId, count);
+        if (filmIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, Film> filmsById = loadByIds(filmIds);
+        return filmIds.stream()
+                .filter(filmsById::containsKey)
+                .map(filmsById::get)
+                .toList();
     }
 
     @Override
@@ -243,79 +371,77 @@ COALESCE — это функция, которая возвращает перв
         }
     }
 
+    /*
+    Поиск по триграммному индексу FilmSearchIndex. Результаты упорядочены по количеству лайков,
+    при равенстве лайков — по релевантности совпадения, затем по id.
+     */
     @Override
-    public Collection<Film> filmSearch(String searchTitle, boolean isDirectorSearch, boolean isTitleSearch) {
+    public Collection<Film> filmSearch(String searchTitle, boolean isDirectorSearch, boolean isTitleSearch,
+                                       Integer limit, int offset) {
         if (searchTitle == null || searchTitle.isEmpty()) {
             throw new IllegalArgumentException("searchTitle cannot be null or empty");
         }
-        if (isDirectorSearch && isTitleSearch) {
-            String searchQuery = "%" + searchTitle + "%";
-            String newQuery = String.format(SELECT_FILMS_QUERY, "WHERE LOWER(f.name) LIKE LOWER(?) OR LOWER(d.name) LIKE LOWER(?)", "");
-            return jdbcTemplate.query(newQuery, FilmMapper.getInstance(), searchQuery, searchQuery);
-        } else if (isTitleSearch) {
-            String searchQuery = "%" + searchTitle + "%";
-            String query = String.format(SELECT_FILMS_QUERY, "WHERE LOWER(f.name) LIKE LOWER(?)", "");
-            return jdbcTemplate.query(query, FilmMapper.getInstance(), searchQuery);
-        } else if (isDirectorSearch) {
-            String searchByQuery = "%" + searchTitle + "%";
-            String byQuery = String.format(SELECT_FILMS_QUERY, "WHERE LOWER(d.name) LIke LOWER(?)", "");
-            return jdbcTemplate.query(byQuery, FilmMapper.getInstance(), searchByQuery);
+        if (!isDirectorSearch && !isTitleSearch) {
+            throw new IllegalArgumentException("by can be: director or title");
+        }
+        Map<Integer, Integer> relevance = searchIndex.search(searchTitle, isTitleSearch, isDirectorSearch);
+        List<Integer> filmIds = relevance.keySet().stream()
+                .sorted(Comparator.comparingInt((Integer id) -> popularityIndex.likes(id)).reversed()
+                        .thenComparing(relevance::get, Comparator.reverseOrder())
+                        .thenComparingInt(Integer::intValue))
+                .skip(offset)
+                .limit(limit != null ? limit : Long.MAX_VALUE)
+                .toList();
+        if (filmIds.isEmpty()) {
+            return List.of();
         }
-        throw new IllegalArgumentException("by can be: director or title");
+        Map<Integer, Film> filmsById = loadByIds(filmIds);
+        return filmIds.stream()
+                .filter(filmsById::containsKey)
+                .map(filmsById::get)
+                .toList();
     }
 
-    private void setFilmGenres(int filmId, Set<Genre> genres) {
-        List<Genre> genresList = genres.stream().toList();
-        jdbcTemplate.batchUpdate(
-                "INSERT INTO films_genres (film_id, genre_id) VALUES (?, ?)",
-                new BatchPreparedStatementSetter() {
-
-                    @Override
-                    public void setValues(PreparedStatement ps, int i) throws SQLException {
-                        ps.setInt(1, filmId);
-                        ps.setInt(2, genresList.get(i).getId());
-                        System.out.println(ps);
-                    }
-
-                    @Override
-                    public int getBatchSize() {
-                        return genres.size();
-                    }
-                }
-        );
-    }
+    private void insertFilmLinks(FilmLink link, int filmId, Collection<Integer> ids) {
+        List<Integer> idsList = List.copyOf(ids);
+        if (idsList.isEmpty()) {
+            return;
+        }
+        String query = String.format("INSERT INTO %s (film_id, %s) VALUES (?, ?)", link.table(), link.column());
+        jdbcTemplate.batchUpdate(query, new BatchPreparedStatementSetter() {
 
-    /* Метод setFilmDirectors связывает фильм с его режиссерами в базе данных.
-     Вставляя соответствующие записи в таблицу films_directors.
-    */
-    private void setFilmDirectors(int filmId, Set<Director> directors) {
-        List<Director> directorsList = directors.stream().toList();
-        //используется для выполнения пакетного обновления (вставки) данных в таблицу films_directors.
-        jdbcTemplate.batchUpdate(
-                "INSERT INTO films_directors (film_id, director_id) VALUES (?, ?)",//SQL-запрос для вставки данных.
-                new BatchPreparedStatementSetter() { //определяет, как будут заполняться параметры SQL-запроса.
-
-                    @Override
-                    public void setValues(PreparedStatement ps, int i) throws SQLException {
-                        ps.setInt(1, filmId);//устанавливает идентификатор фильма.
-                        //устанавливает идентификатор режиссера из списка режиссеров.
-                        ps.setInt(2, directorsList.get(i).getId());
-                        System.out.println(ps);
-                    }
-
-                    //возвращает размер пакета, то есть количество режиссеров, которые нужно связать с фильмом.
-                    @Override
-                    public int getBatchSize() {
-                        return directors.size();
-                    }
-                }
-        );
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setInt(1, filmId);
+                ps.setInt(2, idsList.get(i));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return idsList.size();
+            }
+        });
     }
 
-    private boolean userFilmLikeExists(int filmId, int userId) {
-        String query = "SELECT EXISTS (SELECT 1 FROM users_films_likes WHERE film_id = ? AND user_id = ?)";
-        Boolean exists = jdbcTemplate.queryForObject(query, Boolean.class, filmId, userId);
-        return exists != null && exists;
+    /*
+    Приводит связи фильма к переданному набору id: читает текущие id одним запросом
+    и удаляет или добавляет только те строки, которые действительно изменились.
+     */
+    private void updateFilmLinks(FilmLink link, int filmId, Collection<Integer> ids) {
+        String selectQuery = String.format("SELECT %s FROM %s WHERE film_id = ?", link.column(), link.table());
+        Set<Integer> currentIds = new HashSet<>(jdbcTemplate.queryForList(selectQuery, Integer.class, filmId));
+        Set<Integer> newIds = new HashSet<>(ids);
+
+        List<Integer> idsToDelete = currentIds.stream().filter(id -> !newIds.contains(id)).toList();
+        if (!idsToDelete.isEmpty()) {
+            String deleteQuery = String.format("DELETE FROM %s WHERE film_id = :filmId AND %s IN (:ids)",
+                    link.table(), link.column());
+            MapSqlParameterSource params = new MapSqlParameterSource()
+                    .addValue("filmId", filmId)
+                    .addValue("ids", idsToDelete);
+            namedParameterJdbcTemplate.update(deleteQuery, params);
+        }
+        insertFilmLinks(link, filmId, newIds.stream().filter(id -> !currentIds.contains(id)).toList());
     }
 
     /*
@@ -327,17 +453,51 @@ COALESCE — это функция, которая возвращает перв
     public Collection<Film> getFilmsOfDirectors(int directorId, String sortBy) {
         directorStorage.checkDirectorExists(directorId);
 
-        String query;
+        String order;
         if (sortBy.equalsIgnoreCase("year")) {
-            query = String.format(
-                    SELECT_FILMS_QUERY,
-                    "WHERE fd.director_id = ?",
-                    "ORDER BY f.release_date");
+            order = "ORDER BY f.release_date";
         } else if (sortBy.equalsIgnoreCase("likes")) {
-            query = String.format(SELECT_FILMS_QUERY, "WHERE fd.director_id = ?", "ORDER BY likes desc ");
+            order = "ORDER BY likes desc ";
         } else {
             throw new ValidationException("Error parameter sort film");
         }
-        return jdbcTemplate.query(query, FilmMapper.getInstance(), directorId);
+        return filmLoader.load("""
+                WHERE f.id IN (
+                     SELECT film_id
+                       FROM films_directors
+                      WHERE director_id = ?
+                     )
+                """, order, directorId);
+    }
+
+    private Map<Integer, Film> loadByIds(Collection<Integer> filmIds) {
+        MapSqlParameterSource params = new MapSqlParameterSource("filmIds", filmIds);
+        Map<Integer, Film> filmsById = new HashMap<>();
+        filmLoader.load("WHERE f.id IN (:filmIds)", "", params).forEach(film -> filmsById.put(film.getId(), film));
+        return filmsById;
+    }
+
+    private Integer parseYear(String year) {
+        if (year == null) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(year);
+        } catch (NumberFormatException e) {
+            String reason = String.format("year %s is not a number", year);
+            log.warn("Validation failed: {}", reason);
+            throw new ValidationException(reason);
+        }
+    }
+
+    private static List<Integer> genresIds(Film film) {
+        return film.getGenres().stream().map(Genre::getId).distinct().toList();
+    }
+
+    private static List<Integer> directorsIds(Film film) {
+        return film.getDirectors().stream().map(Director::getId).distinct().toList();
+    }
+
+    private record FilmLink(String table, String column) {
     }
 }
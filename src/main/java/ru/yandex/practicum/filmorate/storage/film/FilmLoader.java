@@ -0,0 +1,142 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/*
+Чтение фильмов в две фазы:
+1. выбирается страница строк films вместе с поддерживаемым счетчиком likes_count,
+   без JOIN на связи, поэтому число строк равно числу фильмов;
+2. жанры и режиссеры подгружаются одним IN-запросом на каждую связь для всех выбранных фильмов
+   и раскладываются по фильмам в памяти.
+Для выгрузки всего каталога есть потоковый вариант stream: строки читаются курсором с ограниченным
+fetch size и гидрируются порциями, поэтому в памяти одновременно находится не больше одной порции.
+ */
+@Component
+public class FilmLoader {
+    public static final String SELECT_FILMS_QUERY = """
+                SELECT f.id,
+                       f.name,
+                       f.description,
+                       f.release_date,
+                       f.duration,
+                       f.mpa_id,
+                       m.name AS mpa_name,
+                       f.likes_count AS likes
+                  FROM films f
+                  JOIN mpa m ON f.mpa_id = m.id
+                       %s
+                       %s
+            """;
+    private static final String SELECT_FILMS_GENRES_QUERY = """
+            SELECT fg.film_id,
+                   g.id,
+                   g.name
+              FROM films_genres fg
+              JOIN genres g ON fg.genre_id = g.id
+             WHERE fg.film_id IN (:filmIds)
+            """;
+    private static final String SELECT_FILMS_DIRECTORS_QUERY = """
+            SELECT fd.film_id,
+                   d.id,
+                   d.name
+              FROM films_directors fd
+              JOIN directors d ON fd.director_id = d.id
+             WHERE fd.film_id IN (:filmIds)
+            """;
+    private static final int HYDRATION_BATCH_SIZE = 500;
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public FilmLoader(JdbcTemplate jdbcTemplate, NamedParameterJdbcTemplate namedParameterJdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = namedParameterJdbcTemplate;
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(STREAM_FETCH_SIZE);
+    }
+
+    public List<Film> load(String condition, String order, Object... args) {
+        String query = String.format(SELECT_FILMS_QUERY, condition, order);
+        return hydrate(jdbcTemplate.query(query, FilmMapper.getInstance(), args));
+    }
+
+    public List<Film> load(String condition, String order, SqlParameterSource params) {
+        String query = String.format(SELECT_FILMS_QUERY, condition, order);
+        return hydrate(namedParameterJdbcTemplate.query(query, params, FilmMapper.getInstance()));
+    }
+
+    public void stream(String condition, String order, Consumer<Film> consumer, Object... args) {
+        String query = String.format(SELECT_FILMS_QUERY, condition, order);
+        List<Film> chunk = new ArrayList<>(HYDRATION_BATCH_SIZE);
+        try (Stream<Film> films = streamingJdbcTemplate.queryForStream(query, FilmMapper.getInstance(), args)) {
+            Iterator<Film> iterator = films.iterator();
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == HYDRATION_BATCH_SIZE) {
+                    hydrate(chunk).forEach(consumer);
+                    chunk.clear();
+                }
+            }
+        }
+        hydrate(chunk).forEach(consumer);
+    }
+
+    public List<Film> hydrate(List<Film> films) {
+        if (films.isEmpty()) {
+            return films;
+        }
+        Map<Integer, Film> filmsById = new HashMap<>(films.size() * 2);
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        /*
+        Genre и Director неизменяемы, поэтому один и тот же объект жанра или режиссера
+        разделяется всеми фильмами выборки вместо создания нового экземпляра на каждую строку связи.
+         */
+        Map<Integer, Genre> genres = new HashMap<>();
+        Map<Integer, Director> directors = new HashMap<>();
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < filmIds.size(); from += HYDRATION_BATCH_SIZE) {
+            List<Integer> batch = filmIds.subList(from, Math.min(from + HYDRATION_BATCH_SIZE, filmIds.size()));
+            MapSqlParameterSource params = new MapSqlParameterSource("filmIds", batch);
+            namedParameterJdbcTemplate.query(SELECT_FILMS_GENRES_QUERY, params, rs -> {
+                Film film = filmsById.get(rs.getInt(1));
+                int genreId = rs.getInt(2);
+                Genre genre = genres.get(genreId);
+                if (genre == null) {
+                    genre = new Genre(genreId, rs.getString(3));
+                    genres.put(genreId, genre);
+                }
+                film.getGenres().add(genre);
+            });
+            namedParameterJdbcTemplate.query(SELECT_FILMS_DIRECTORS_QUERY, params, rs -> {
+                Film film = filmsById.get(rs.getInt(1));
+                int directorId = rs.getInt(2);
+                Director director = directors.get(directorId);
+                if (director == null) {
+                    director = new Director(directorId, rs.getString(3));
+                    directors.put(directorId, director);
+                }
+                film.getDirectors().add(director);
+            });
+        }
+        return films;
+    }
+}
@@ -0,0 +1,188 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+Индекс популярности фильмов в памяти для GET /films/popular.
+Для каждой корзины (жанр, год), а также (жанр, любой год), (любой жанр, год) и общей корзины
+хранится набор id фильмов, упорядоченный по количеству лайков (по убыванию), затем по id —
+так же, как в SQL-запросе FilmDbStorage.filmsPopularFromDb.
+Индекс обновляется инкрементально из FilmDbStorage и перестраивается из БД при старте приложения.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmPopularityIndex {
+    private static final Comparator<FilmRank> RANK_ORDER = Comparator.comparingInt(FilmRank::likes).reversed()
+            .thenComparingInt(FilmRank::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, FilmEntry> films = new HashMap<>();
+    private final Map<Bucket, NavigableSet<FilmRank>> buckets = new HashMap<>();
+
+    /*
+    Перестроение читает БД под той же блокировкой, что и инкрементальные изменения:
+    изменение, примененное после фиксации во время чтения, иначе было бы затерто прочитанными данными.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            Map<Integer, List<Integer>> filmsGenres = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, genre_id FROM films_genres", rs -> {
+                filmsGenres.computeIfAbsent(rs.getInt("film_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+            });
+            films.clear();
+            buckets.clear();
+            jdbcTemplate.query("""
+                    SELECT id,
+                           EXTRACT(YEAR FROM release_date) AS release_year,
+                           likes_count
+                      FROM films
+                    """, rs -> {
+                int filmId = rs.getInt("id");
+                int[] genreIds = toArray(filmsGenres.getOrDefault(filmId, List.of()));
+                FilmEntry entry = new FilmEntry(rs.getInt("release_year"), genreIds, rs.getInt("likes_count"));
+                films.put(filmId, entry);
+                addToBuckets(filmId, entry);
+            });
+            log.info("Film popularity index rebuilt: {} films, {} buckets", films.size(), buckets.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(int filmId, int releaseYear, Collection<Integer> genreIds) {
+        lock.writeLock().lock();
+        try {
+            FilmEntry previous = films.get(filmId);
+            int likes = 0;
+            if (previous != null) {
+                removeFromBuckets(filmId, previous);
+                likes = previous.likes();
+            }
+            FilmEntry entry = new FilmEntry(releaseYear, toArray(genreIds), likes);
+            films.put(filmId, entry);
+            addToBuckets(filmId, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int filmId) {
+        lock.writeLock().lock();
+        try {
+            FilmEntry entry = films.remove(filmId);
+            if (entry != null) {
+                removeFromBuckets(filmId, entry);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void changeLikes(int filmId, int delta) {
+        lock.writeLock().lock();
+        try {
+            FilmEntry entry = films.get(filmId);
+            if (entry == null) {
+                log.warn("Film with id {} is missing in popularity index", filmId);
+                return;
+            }
+            removeFromBuckets(filmId, entry);
+            FilmEntry updated = new FilmEntry(entry.releaseYear(), entry.genreIds(), entry.likes() + delta);
+            films.put(filmId, updated);
+            addToBuckets(filmId, updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int likes(int filmId) {
+        lock.readLock().lock();
+        try {
+            FilmEntry entry = films.get(filmId);
+            return entry != null ? entry.likes() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /*
+    Возвращает id не более чем count самых популярных фильмов корзины.
+    null в genreId или year означает отсутствие фильтра по этому полю.
+     */
+    public List<Integer> top(Integer genreId, Integer year, int count) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<FilmRank> ranks = buckets.get(new Bucket(genreId, year));
+            if (ranks == null) {
+                return List.of();
+            }
+            List<Integer> filmIds = new ArrayList<>(Math.min(count, ranks.size()));
+            Iterator<FilmRank> iterator = ranks.iterator();
+            while (iterator.hasNext() && filmIds.size() < count) {
+                filmIds.add(iterator.next().filmId());
+            }
+            return filmIds;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addToBuckets(int filmId, FilmEntry entry) {
+        FilmRank rank = new FilmRank(filmId, entry.likes());
+        for (Bucket bucket : bucketsOf(entry)) {
+            buckets.computeIfAbsent(bucket, b -> new TreeSet<>(RANK_ORDER)).add(rank);
+        }
+    }
+
+    private void removeFromBuckets(int filmId, FilmEntry entry) {
+        FilmRank rank = new FilmRank(filmId, entry.likes());
+        for (Bucket bucket : bucketsOf(entry)) {
+            NavigableSet<FilmRank> ranks = buckets.get(bucket);
+            if (ranks != null && ranks.remove(rank) && ranks.isEmpty()) {
+                buckets.remove(bucket);
+            }
+        }
+    }
+
+    private List<Bucket> bucketsOf(FilmEntry entry) {
+        List<Bucket> result = new ArrayList<>(2 + entry.genreIds().length * 2);
+        result.add(new Bucket(null, null));
+        result.add(new Bucket(null, entry.releaseYear()));
+        for (int genreId : entry.genreIds()) {
+            result.add(new Bucket(genreId, null));
+            result.add(new Bucket(genreId, entry.releaseYear()));
+        }
+        return result;
+    }
+
+    private static int[] toArray(Collection<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).distinct().toArray();
+    }
+
+    private record Bucket(Integer genreId, Integer year) {
+    }
+
+    private record FilmRank(int filmId, int likes) {
+    }
+
+    private record FilmEntry(int releaseYear, int[] genreIds, int likes) {
+    }
+}
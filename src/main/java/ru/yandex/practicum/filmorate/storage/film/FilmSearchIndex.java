@@ -0,0 +1,270 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+Триграммный инвертированный индекс названий фильмов и имен режиссеров для GET /films/search.
+Каждая строка разбивается на все подстроки длиной 3 символа; для запроса берется пересечение
+списков документов по его триграммам (от самого короткого), после чего кандидаты проверяются
+на вхождение подстроки. Результат совпадает с LIKE '%query%' без учета регистра,
+но не требует просмотра всех строк. Запросы короче 3 символов проверяются перебором.
+Индекс обновляется из FilmDbStorage и DirectorDbStorage и перестраивается из БД при старте.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmSearchIndex {
+    private static final int GRAM_SIZE = 3;
+    private static final int EXACT_MATCH_SCORE = 3;
+    private static final int PREFIX_MATCH_SCORE = 2;
+    private static final int WORD_MATCH_SCORE = 1;
+    private static final int SUBSTRING_MATCH_SCORE = 0;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TextIndex titles = new TextIndex();
+    private final TextIndex directorNames = new TextIndex();
+    private final Map<Integer, Set<Integer>> filmDirectors = new HashMap<>();
+    private final Map<Integer, Set<Integer>> directorFilms = new HashMap<>();
+
+    /*
+    БД читается под блокировкой записи: putFilm, removeFilm и putDirector, примененные
+    после фиксации во время чтения, иначе были бы затерты прочитанными данными.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            Map<Integer, String> films = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM films", rs -> {
+                films.put(rs.getInt("id"), rs.getString("name"));
+            });
+            Map<Integer, String> directors = new HashMap<>();
+            jdbcTemplate.query("SELECT id, name FROM directors", rs -> {
+                directors.put(rs.getInt("id"), rs.getString("name"));
+            });
+            Map<Integer, Set<Integer>> links = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, director_id FROM films_directors", rs -> {
+                links.computeIfAbsent(rs.getInt("film_id"), id -> new HashSet<>()).add(rs.getInt("director_id"));
+            });
+
+            titles.clear();
+            directorNames.clear();
+            filmDirectors.clear();
+            directorFilms.clear();
+            directors.forEach(directorNames::put);
+            films.forEach((filmId, title) -> putFilmUnlocked(filmId, title, links.getOrDefault(filmId, Set.of())));
+            log.info("Film search index rebuilt: {} films, {} directors", films.size(), directors.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putFilm(int filmId, String title, Collection<Integer> directorsIds) {
+        lock.writeLock().lock();
+        try {
+            removeFilmUnlocked(filmId);
+            putFilmUnlocked(filmId, title, directorsIds);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeFilm(int filmId) {
+        lock.writeLock().lock();
+        try {
+            removeFilmUnlocked(filmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void putDirector(int directorId, String name) {
+        lock.writeLock().lock();
+        try {
+            directorNames.remove(directorId);
+            directorNames.put(directorId, name);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removeDirector(int directorId) {
+        lock.writeLock().lock();
+        try {
+            directorNames.remove(directorId);
+            Set<Integer> films = directorFilms.remove(directorId);
+            if (films == null) {
+                return;
+            }
+            for (int filmId : films) {
+                Set<Integer> directors = filmDirectors.get(filmId);
+                if (directors != null) {
+                    directors.remove(directorId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /*
+    Возвращает id найденных фильмов с оценкой релевантности: 3 — полное совпадение,
+    2 — совпадение с начала строки, 1 — с начала слова, 0 — вхождение внутри слова.
+    Для фильма, найденного и по названию, и по режиссеру, берется лучшая оценка.
+     */
+    public Map<Integer, Integer> search(String query, boolean byTitle, boolean byDirector) {
+        String normalized = normalize(query);
+        Map<Integer, Integer> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            if (byTitle) {
+                titles.search(normalized).forEach(result::put);
+            }
+            if (byDirector) {
+                directorNames.search(normalized).forEach((directorId, score) -> {
+                    for (int filmId : directorFilms.getOrDefault(directorId, Set.of())) {
+                        result.merge(filmId, score, Math::max);
+                    }
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    private void putFilmUnlocked(int filmId, String title, Collection<Integer> directorsIds) {
+        titles.put(filmId, title);
+        Set<Integer> directors = new HashSet<>(directorsIds);
+        filmDirectors.put(filmId, directors);
+        for (int directorId : directors) {
+            directorFilms.computeIfAbsent(directorId, id -> new HashSet<>()).add(filmId);
+        }
+    }
+
+    private void removeFilmUnlocked(int filmId) {
+        titles.remove(filmId);
+        Set<Integer> directors = filmDirectors.remove(filmId);
+        if (directors == null) {
+            return;
+        }
+        for (int directorId : directors) {
+            Set<Integer> films = directorFilms.get(directorId);
+            if (films != null) {
+                films.remove(filmId);
+            }
+        }
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    private static int score(String text, String query) {
+        if (text.equals(query)) {
+            return EXACT_MATCH_SCORE;
+        }
+        if (text.startsWith(query)) {
+            return PREFIX_MATCH_SCORE;
+        }
+        int from = text.indexOf(query);
+        while (from > 0) {
+            if (!Character.isLetterOrDigit(text.charAt(from - 1))) {
+                return WORD_MATCH_SCORE;
+            }
+            from = text.indexOf(query, from + 1);
+        }
+        return SUBSTRING_MATCH_SCORE;
+    }
+
+    private static Set<String> grams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static final class TextIndex {
+        private final Map<Integer, String> documents = new HashMap<>();
+        private final Map<String, Set<Integer>> postings = new HashMap<>();
+
+        void put(int id, String text) {
+            String normalized = normalize(text);
+            documents.put(id, normalized);
+            for (String gram : grams(normalized)) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(id);
+            }
+        }
+
+        void remove(int id) {
+            String text = documents.remove(id);
+            if (text == null) {
+                return;
+            }
+            for (String gram : grams(text)) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+
+        void clear() {
+            documents.clear();
+            postings.clear();
+        }
+
+        Map<Integer, Integer> search(String query) {
+            Map<Integer, Integer> result = new HashMap<>();
+            for (int id : candidates(query)) {
+                String text = documents.get(id);
+                if (text != null && text.contains(query)) {
+                    result.put(id, score(text, query));
+                }
+            }
+            return result;
+        }
+
+        private Collection<Integer> candidates(String query) {
+            if (query.length() < GRAM_SIZE) {
+                return documents.keySet();
+            }
+            List<Set<Integer>> lists = new ArrayList<>();
+            for (String gram : grams(query)) {
+                Set<Integer> ids = postings.get(gram);
+                if (ids == null) {
+                    return List.of();
+                }
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingInt(Set::size));
+            List<Integer> candidates = new ArrayList<>();
+            for (int id : lists.getFirst()) {
+                boolean inAll = true;
+                for (int i = 1; i < lists.size() && inAll; i++) {
+                    inAll = lists.get(i).contains(id);
+                }
+                if (inAll) {
+                    candidates.add(id);
+                }
+            }
+            return candidates;
+        }
+    }
+}
@@ -3,10 +3,15 @@ package ru.yandex.practicum.filmorate.storage.film;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.Collection;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Collection<Film> getAll();
 
+    Collection<Film> getPage(int afterId, int limit);
+
+    void streamAll(Consumer<Film> consumer);
+
     Film getById(int id);
 
     Film create(Film film);
@@ -23,6 +28,10 @@ public interface FilmStorage {
 
     Collection<Film> filmsCommon(int userId, int friendId);
 
+    Collection<Film> filmsCommon(Collection<Integer> userIds, int minLikes);
+
+    Collection<Film> filmsSimilar(int filmId, int count);
+
     /*
     GET /films/director/{directorId}?sortBy=[year,likes]
     Возвращает список фильмов режиссера отсортированных по количеству лайков или году выпуска
@@ -32,5 +41,8 @@ public interface FilmStorage {
 
     void checkFilmExists(int id);
 
-    Collection<Film> filmSearch(String searchTitle, boolean isDirectorSearch, boolean isTitleSearch);
+    int repairLikesCount();
+
+    Collection<Film> filmSearch(String searchTitle, boolean isDirectorSearch, boolean isTitleSearch,
+                                Integer limit, int offset);
 }
@@ -0,0 +1,217 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Индекс лайков в памяти: для каждого пользователя — отсортированный массив id понравившихся фильмов,
+для каждого фильма — отсортированный массив id пользователей, которые его лайкнули.
+Проверка лайка — двоичный поиск, общие фильмы двух пользователей — слияние двух отсортированных
+массивов за O(n + m), число лайков фильма — длина его массива.
+Общие фильмы группы ищутся, начиная с самых коротких списков, с остановкой на пустом пересечении.
+Массивы не изменяются после публикации: add и remove заменяют их копией, так что чтение не блокируется.
+Индекс обновляется из FilmDbStorage и UserDbStorage и перестраивается из БД при старте приложения.
+Изменения и перестроение синхронизированы: изменение, примененное после фиксации во время чтения БД
+в rebuild, иначе было бы затерто прочитанными данными.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LikesIndex {
+    private static final int[] EMPTY = new int[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<Integer, int[]> usersFilms = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> filmsUsers = new ConcurrentHashMap<>();
+
+    public synchronized void rebuild() {
+        Map<Integer, IntList> users = new HashMap<>();
+        Map<Integer, IntList> films = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM users_films_likes", rs -> {
+            int userId = rs.getInt("user_id");
+            int filmId = rs.getInt("film_id");
+            users.computeIfAbsent(userId, id -> new IntList()).add(filmId);
+            films.computeIfAbsent(filmId, id -> new IntList()).add(userId);
+        });
+        usersFilms.keySet().retainAll(users.keySet());
+        users.forEach((userId, filmIds) -> usersFilms.put(userId, filmIds.toSortedArray()));
+        filmsUsers.keySet().retainAll(films.keySet());
+        films.forEach((filmId, userIds) -> filmsUsers.put(filmId, userIds.toSortedArray()));
+        log.info("Likes index rebuilt: {} users, {} films", users.size(), films.size());
+    }
+
+    public synchronized void add(int userId, int filmId) {
+        usersFilms.compute(userId, (id, filmIds) -> with(filmIds, filmId));
+        filmsUsers.compute(filmId, (id, userIds) -> with(userIds, userId));
+    }
+
+    public synchronized void remove(int userId, int filmId) {
+        usersFilms.computeIfPresent(userId, (id, filmIds) -> without(filmIds, filmId));
+        filmsUsers.computeIfPresent(filmId, (id, userIds) -> without(userIds, userId));
+    }
+
+    public synchronized void removeUser(int userId) {
+        int[] filmIds = usersFilms.remove(userId);
+        if (filmIds != null) {
+            for (int filmId : filmIds) {
+                filmsUsers.computeIfPresent(filmId, (id, userIds) -> without(userIds, userId));
+            }
+        }
+    }
+
+    public synchronized void removeFilm(int filmId) {
+        int[] userIds = filmsUsers.remove(filmId);
+        if (userIds != null) {
+            for (int userId : userIds) {
+                usersFilms.computeIfPresent(userId, (id, filmIds) -> without(filmIds, filmId));
+            }
+        }
+    }
+
+    public boolean contains(int userId, int filmId) {
+        return Arrays.binarySearch(usersFilms.getOrDefault(userId, EMPTY), filmId) >= 0;
+    }
+
+    public int likesCount(int filmId) {
+        return filmsUsers.getOrDefault(filmId, EMPTY).length;
+    }
+
+    /*
+    Отсортированные id фильмов, которые лайкнули не менее minUsers пользователей из userIds.
+    При minUsers, равном размеру группы, списки пересекаются по порядку от самого короткого.
+    Иначе фильм, набравший minUsers лайков, обязательно есть хотя бы в одном из n - minUsers + 1
+    самых коротких списков, поэтому кандидаты берутся только из них, а остальные списки
+    проверяются двоичным поиском до набора minUsers совпадений или до момента, когда набрать их уже нельзя.
+     */
+    public int[] commonFilms(Collection<Integer> userIds, int minUsers) {
+        int[][] lists = userIds.stream()
+                .distinct()
+                .map(userId -> usersFilms.getOrDefault(userId, EMPTY))
+                .sorted(Comparator.comparingInt(films -> films.length))
+                .toArray(int[][]::new);
+        if (lists.length == 0 || minUsers > lists.length) {
+            return EMPTY;
+        }
+        if (minUsers == lists.length) {
+            int[] result = lists[0];
+            for (int i = 1; i < lists.length && result.length > 0; i++) {
+                result = intersect(result, lists[i]);
+            }
+            return result;
+        }
+        int[] candidates = EMPTY;
+        for (int i = 0; i <= lists.length - minUsers; i++) {
+            candidates = union(candidates, lists[i]);
+        }
+        int[] result = new int[candidates.length];
+        int size = 0;
+        for (int filmId : candidates) {
+            int matches = 0;
+            for (int i = 0; i < lists.length && matches < minUsers && matches + lists.length - i >= minUsers; i++) {
+                if (Arrays.binarySearch(lists[i], filmId) >= 0) {
+                    matches++;
+                }
+            }
+            if (matches >= minUsers) {
+                result[size++] = filmId;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] intersect(int[] first, int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] union(int[] first, int[] second) {
+        int[] result = new int[first.length + second.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length || j < second.length) {
+            if (j == second.length || (i < first.length && first[i] < second[j])) {
+                result[size++] = first[i++];
+            } else if (i == first.length || first[i] > second[j]) {
+                result[size++] = second[j++];
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static int[] with(int[] values, int value) {
+        if (values == null) {
+            return new int[]{value};
+        }
+        int i = Arrays.binarySearch(values, value);
+        if (i >= 0) {
+            return values;
+        }
+        int position = -i - 1;
+        int[] updated = new int[values.length + 1];
+        System.arraycopy(values, 0, updated, 0, position);
+        updated[position] = value;
+        System.arraycopy(values, position, updated, position + 1, values.length - position);
+        return updated;
+    }
+
+    // null удаляет ключ из отображения, если массив стал пустым
+    private static int[] without(int[] values, int value) {
+        int i = Arrays.binarySearch(values, value);
+        if (i < 0) {
+            return values;
+        }
+        if (values.length == 1) {
+            return null;
+        }
+        int[] updated = new int[values.length - 1];
+        System.arraycopy(values, 0, updated, 0, i);
+        System.arraycopy(values, i + 1, updated, i, values.length - i - 1);
+        return updated;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int[] toSortedArray() {
+            int[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package ru.yandex.practicum.filmorate.storage.friend_requests;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/*
+Граф заявок в друзья в памяти. Строка users_friends_requests (user_id, friend_id, status) — направленное
+ребро; для каждого пользователя хранятся исходящие и входящие ребра в виде отсортированного массива id
+и параллельного массива признаков APPROVED. Друзья пользователя — все исходящие ребра и одобренные
+входящие, как в прежнем SQL-запросе с UNION; общие друзья — слияние двух отсортированных списков.
+Рекомендации друзей — обход на два шага с подсчетом общих друзей в IntIntMap; на каждом шаге
+просматривается не больше MAX_FAN_OUT друзей, а для пользователей с большим числом друзей
+подсчет разбивается на задачи ForkJoinPool.
+Кратчайший путь между пользователями ищется двунаправленным обходом в ширину по одобренным ребрам
+с ограничением глубины и времени (filmorate.friends.path.time-budget-ms, 0 — без ограничения).
+Массивы не изменяются после публикации: изменения заменяют их копией, так что чтение не блокируется.
+Граф обновляется из FriendRequestDbStorage после фиксации изменений таблицы и перестраивается из БД при старте.
+После фиксации пара пользователей перечитывается из БД (refreshPair): коллбэки встречных транзакций
+выполняются в произвольном порядке, и изменение, вычисленное в транзакции, могло бы перезаписать более позднее.
+Изменения графа выполняются под монитором графа, поэтому последней применяется последняя прочитанная строка.
+ */
+@Component
+@Slf4j
+public class FriendGraph {
+    private static final int[] EMPTY = new int[0];
+    private static final int MAX_FAN_OUT = 1000;
+    private static final int FORK_THRESHOLD = 64;
+    private static final int MAX_PATH_LENGTH = 6;
+    private static final Comparator<Suggestion> SUGGESTION_ORDER = Comparator.comparingInt(Suggestion::mutualFriends)
+            .reversed()
+            .thenComparingInt(Suggestion::userId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long pathTimeBudgetMillis;
+    private final Map<Integer, Edges> outgoing = new ConcurrentHashMap<>();
+    private final Map<Integer, Edges> incoming = new ConcurrentHashMap<>();
+
+    public FriendGraph(JdbcTemplate jdbcTemplate,
+                       @Value("${filmorate.friends.path.time-budget-ms:200}") long pathTimeBudgetMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pathTimeBudgetMillis = pathTimeBudgetMillis;
+    }
+
+    public synchronized void rebuild() {
+        List<int[]> edges = new ArrayList<>();
+        jdbcTemplate.query("SELECT user_id, friend_id, status FROM users_friends_requests", rs -> {
+            FriendRequestStatus status = FriendRequestStatus.valueOf(rs.getString("status").toUpperCase());
+            edges.add(new int[]{rs.getInt("user_id"), rs.getInt("friend_id"),
+                    status == FriendRequestStatus.APPROVED ? 1 : 0});
+        });
+        int[] userIds = new int[edges.size()];
+        int[] friendIds = new int[edges.size()];
+        boolean[] approved = new boolean[edges.size()];
+        for (int i = 0; i < edges.size(); i++) {
+            userIds[i] = edges.get(i)[0];
+            friendIds[i] = edges.get(i)[1];
+            approved[i] = edges.get(i)[2] == 1;
+        }
+        load(userIds, friendIds, approved);
+    }
+
+    // Заменяет граф ребрами (userIds[i] -> friendIds[i]) со статусом approved[i]
+    public synchronized void load(int[] userIds, int[] friendIds, boolean[] approved) {
+        long start = System.currentTimeMillis();
+        Map<Integer, Edges> out = group(userIds, friendIds, approved);
+        Map<Integer, Edges> in = group(friendIds, userIds, approved);
+        outgoing.keySet().retainAll(out.keySet());
+        outgoing.putAll(out);
+        incoming.keySet().retainAll(in.keySet());
+        incoming.putAll(in);
+        log.info("Friend graph loaded: {} users, {} requests in {} ms", out.size(), userIds.length,
+                System.currentTimeMillis() - start);
+    }
+
+    public Optional<FriendRequestStatus> status(int userId, int friendId) {
+        Edges edges = outgoing.get(userId);
+        int i = edges != null ? Arrays.binarySearch(edges.ids(), friendId) : -1;
+        if (i < 0) {
+            return Optional.empty();
+        }
+        return Optional.of(edges.approved()[i] ? FriendRequestStatus.APPROVED : FriendRequestStatus.UNAPPROVED);
+    }
+
+    public synchronized void put(int userId, int friendId, FriendRequestStatus status) {
+        boolean approved = status == FriendRequestStatus.APPROVED;
+        outgoing.compute(userId, (id, edges) -> with(edges, friendId, approved));
+        incoming.compute(friendId, (id, edges) -> with(edges, userId, approved));
+    }
+
+    public synchronized void remove(int userId, int friendId) {
+        outgoing.computeIfPresent(userId, (id, edges) -> without(edges, friendId));
+        incoming.computeIfPresent(friendId, (id, edges) -> without(edges, userId));
+    }
+
+    // Заменяет ребра между userId и friendId строкой пары из users_friends_requests
+    public synchronized void refreshPair(int userId, int friendId) {
+        remove(userId, friendId);
+        remove(friendId, userId);
+        jdbcTemplate.query("""
+                SELECT user_id, friend_id, status
+                  FROM users_friends_requests
+                 WHERE pair_min = ?
+                   AND pair_max = ?
+                """, rs -> {
+            put(rs.getInt("user_id"), rs.getInt("friend_id"),
+                    FriendRequestStatus.valueOf(rs.getString("status").toUpperCase()));
+        }, Math.min(userId, friendId), Math.max(userId, friendId));
+    }
+
+    public synchronized void removeUser(int userId) {
+        Edges out = outgoing.remove(userId);
+        if (out != null) {
+            for (int friendId : out.ids()) {
+                incoming.computeIfPresent(friendId, (id, edges) -> without(edges, userId));
+            }
+        }
+        Edges in = incoming.remove(userId);
+        if (in != null) {
+            for (int otherId : in.ids()) {
+                outgoing.computeIfPresent(otherId, (id, edges) -> without(edges, userId));
+            }
+        }
+    }
+
+    // Отсортированные id друзей: исходящие заявки с любым статусом и одобренные входящие
+    public int[] friends(int userId) {
+        Edges out = outgoing.get(userId);
+        Edges in = incoming.get(userId);
+        int[] outIds = out != null ? out.ids() : EMPTY;
+        if (in == null) {
+            return outIds;
+        }
+        int[] result = new int[outIds.length + in.ids().length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < outIds.length || j < in.ids().length) {
+            if (j < in.ids().length && !in.approved()[j]) {
+                j++;
+            } else if (j == in.ids().length || (i < outIds.length && outIds[i] < in.ids()[j])) {
+                result[size++] = outIds[i++];
+            } else if (i == outIds.length || outIds[i] > in.ids()[j]) {
+                result[size++] = in.ids()[j++];
+            } else {
+                result[size++] = outIds[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    public int[] commonFriends(int userId, int otherId) {
+        int[] first = friends(userId);
+        int[] second = friends(otherId);
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /*
+    Возвращает id до count друзей друзей по убыванию числа общих друзей, при равенстве — по id.
+    Исключаются сам пользователь, его друзья и пользователи, заявку которых он еще не одобрил.
+    Для обхода берутся первые MAX_FAN_OUT друзей пользователя и первые MAX_FAN_OUT друзей каждого из них.
+     */
+    public int[] suggestions(int userId, int count) {
+        int[] friends = friends(userId);
+        int[] hop = friends.length > MAX_FAN_OUT ? Arrays.copyOf(friends, MAX_FAN_OUT) : friends;
+        IntIntMap mutualFriends = hop.length > FORK_THRESHOLD
+                ? ForkJoinPool.commonPool().invoke(new MutualFriendsTask(hop, 0, hop.length))
+                : countMutualFriends(hop, 0, hop.length);
+        Edges in = incoming.get(userId);
+        List<Suggestion> candidates = new ArrayList<>(mutualFriends.size());
+        mutualFriends.forEach((candidateId, mutual) -> {
+            if (candidateId != userId && Arrays.binarySearch(friends, candidateId) < 0
+                    && (in == null || Arrays.binarySearch(in.ids(), candidateId) < 0)) {
+                candidates.add(new Suggestion(candidateId, mutual));
+            }
+        });
+        return candidates.stream()
+                .sorted(SUGGESTION_ORDER)
+                .limit(count)
+                .mapToInt(Suggestion::userId)
+                .toArray();
+    }
+
+    public int[] path(int userId, int otherId) {
+        return path(userId, otherId, MAX_PATH_LENGTH, pathTimeBudgetMillis);
+    }
+
+    /*
+    Возвращает id пользователей на кратчайшем пути от userId до otherId по одобренным заявкам
+    (в обе стороны) длиной не больше maxLength ребер, включая оба конца. Если такого пути нет
+    или поиск не уложился в timeBudgetMillis (если он больше нуля), возвращается пустой массив.
+    На каждом шаге расширяется меньший из двух фронтов; посещенные вершины хранятся в IntIntMap
+    вместе с соседом, из которого они достигнуты. Первая вершина, достигнутая с обеих сторон,
+    дает кратчайший путь, так как до этого множества посещенных вершин не пересекались.
+     */
+    public int[] path(int userId, int otherId, int maxLength, long timeBudgetMillis) {
+        if (userId == otherId) {
+            return new int[]{userId};
+        }
+        boolean bounded = timeBudgetMillis > 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+        IntIntMap forwardParents = new IntIntMap(64);
+        IntIntMap backwardParents = new IntIntMap(64);
+        forwardParents.putIfAbsent(userId, userId);
+        backwardParents.putIfAbsent(otherId, otherId);
+        int[] forward = {userId};
+        int[] backward = {otherId};
+        for (int length = 1; length <= maxLength; length++) {
+            boolean expandForward = forward.length <= backward.length;
+            int[] frontier = expandForward ? forward : backward;
+            IntIntMap parents = expandForward ? forwardParents : backwardParents;
+            IntIntMap opposite = expandForward ? backwardParents : forwardParents;
+            int[] next = new int[Math.max(16, frontier.length * 4)];
+            int nextSize = 0;
+            for (int node : frontier) {
+                if (bounded && System.nanoTime() - deadline > 0) {
+                    log.warn("Path search between users {} and {} stopped after {} ms", userId, otherId,
+                            timeBudgetMillis);
+                    return EMPTY;
+                }
+                for (int friendId : approvedFriends(node)) {
+                    if (!parents.putIfAbsent(friendId, node)) {
+                        continue;
+                    }
+                    if (opposite.containsKey(friendId)) {
+                        return buildPath(friendId, forwardParents, backwardParents);
+                    }
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = friendId;
+                }
+            }
+            if (nextSize == 0) {
+                return EMPTY;
+            }
+            if (expandForward) {
+                forward = Arrays.copyOf(next, nextSize);
+            } else {
+                backward = Arrays.copyOf(next, nextSize);
+            }
+        }
+        return EMPTY;
+    }
+
+    // Друзья по одобренным заявкам в любую сторону
+    private int[] approvedFriends(int userId) {
+        Edges out = outgoing.get(userId);
+        Edges in = incoming.get(userId);
+        int[] result = new int[(out != null ? out.ids().length : 0) + (in != null ? in.ids().length : 0)];
+        int size = 0;
+        for (Edges edges : new Edges[]{out, in}) {
+            if (edges == null) {
+                continue;
+            }
+            for (int i = 0; i < edges.ids().length; i++) {
+                if (edges.approved()[i]) {
+                    result[size++] = edges.ids()[i];
+                }
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    // Корни обходов ссылаются сами на себя
+    private static int[] buildPath(int meeting, IntIntMap forwardParents, IntIntMap backwardParents) {
+        List<Integer> path = new ArrayList<>();
+        for (int node = meeting; ; node = forwardParents.get(node, node)) {
+            path.add(node);
+            if (forwardParents.get(node, node) == node) {
+                break;
+            }
+        }
+        Collections.reverse(path);
+        for (int node = meeting; backwardParents.get(node, node) != node; node = backwardParents.get(node, node)) {
+            path.add(backwardParents.get(node, node));
+        }
+        return path.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private IntIntMap countMutualFriends(int[] hop, int from, int to) {
+        IntIntMap counter = new IntIntMap((to - from) * 16);
+        for (int i = from; i < to; i++) {
+            int[] friendsOfFriend = friends(hop[i]);
+            int limit = Math.min(friendsOfFriend.length, MAX_FAN_OUT);
+            for (int j = 0; j < limit; j++) {
+                counter.add(friendsOfFriend[j], 1);
+            }
+        }
+        return counter;
+    }
+
+    private static Map<Integer, Edges> group(int[] from, int[] to, boolean[] approved) {
+        Map<Integer, Integer> degrees = new HashMap<>();
+        for (int id : from) {
+            degrees.merge(id, 1, Integer::sum);
+        }
+        Map<Integer, int[]> ids = new HashMap<>();
+        Map<Integer, boolean[]> statuses = new HashMap<>();
+        Map<Integer, Integer> sizes = new HashMap<>();
+        degrees.forEach((id, degree) -> {
+            ids.put(id, new int[degree]);
+            statuses.put(id, new boolean[degree]);
+        });
+        for (int i = 0; i < from.length; i++) {
+            int position = sizes.merge(from[i], 1, Integer::sum) - 1;
+            ids.get(from[i])[position] = to[i];
+            statuses.get(from[i])[position] = approved[i];
+        }
+        Map<Integer, Edges> result = new HashMap<>();
+        ids.forEach((id, targets) -> result.put(id, Edges.sorted(targets, statuses.get(id))));
+        return result;
+    }
+
+    private static Edges with(Edges edges, int id, boolean approved) {
+        if (edges == null) {
+            return new Edges(new int[]{id}, new boolean[]{approved});
+        }
+        int i = Arrays.binarySearch(edges.ids(), id);
+        if (i >= 0) {
+            boolean[] statuses = edges.approved().clone();
+            statuses[i] = approved;
+            return new Edges(edges.ids(), statuses);
+        }
+        int position = -i - 1;
+        int length = edges.ids().length;
+        int[] ids = new int[length + 1];
+        boolean[] statuses = new boolean[length + 1];
+        System.arraycopy(edges.ids(), 0, ids, 0, position);
+        System.arraycopy(edges.approved(), 0, statuses, 0, position);
+        ids[position] = id;
+        statuses[position] = approved;
+        System.arraycopy(edges.ids(), position, ids, position + 1, length - position);
+        System.arraycopy(edges.approved(), position, statuses, position + 1, length - position);
+        return new Edges(ids, statuses);
+    }
+
+    // null удаляет ключ из отображения, если ребер не осталось
+    private static Edges without(Edges edges, int id) {
+        int i = Arrays.binarySearch(edges.ids(), id);
+        if (i < 0) {
+            return edges;
+        }
+        int length = edges.ids().length;
+        if (length == 1) {
+            return null;
+        }
+        int[] ids = new int[length - 1];
+        boolean[] statuses = new boolean[length - 1];
+        System.arraycopy(edges.ids(), 0, ids, 0, i);
+        System.arraycopy(edges.approved(), 0, statuses, 0, i);
+        System.arraycopy(edges.ids(), i + 1, ids, i, length - i - 1);
+        System.arraycopy(edges.approved(), i + 1, statuses, i, length - i - 1);
+        return new Edges(ids, statuses);
+    }
+
+    private record Suggestion(int userId, int mutualFriends) {
+    }
+
+    // Ребра одного пользователя: ids отсортированы, approved[i] — статус ребра к ids[i]
+    private record Edges(int[] ids, boolean[] approved) {
+        static Edges sorted(int[] ids, boolean[] approved) {
+            long[] packed = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                packed[i] = ((long) ids[i] << 1) | (approved[i] ? 1 : 0);
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < packed.length; i++) {
+                ids[i] = (int) (packed[i] >> 1);
+                approved[i] = (packed[i] & 1) == 1;
+            }
+            return new Edges(ids, approved);
+        }
+    }
+
+    private final class MutualFriendsTask extends RecursiveTask<IntIntMap> {
+        private final int[] hop;
+        private final int from;
+        private final int to;
+
+        MutualFriendsTask(int[] hop, int from, int to) {
+            this.hop = hop;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntIntMap compute() {
+            if (to - from <= FORK_THRESHOLD) {
+                return countMutualFriends(hop, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            MutualFriendsTask left = new MutualFriendsTask(hop, from, middle);
+            left.fork();
+            IntIntMap counter = new MutualFriendsTask(hop, middle, to).compute();
+            IntIntMap leftCounter = left.join();
+            if (leftCounter.size() > counter.size()) {
+                leftCounter.addAll(counter);
+                return leftCounter;
+            }
+            counter.addAll(leftCounter);
+            return counter;
+        }
+    }
+}
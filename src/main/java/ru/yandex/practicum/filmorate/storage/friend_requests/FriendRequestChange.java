@@ -0,0 +1,20 @@
+package ru.yandex.practicum.filmorate.storage.friend_requests;
+
+/*
+Что произошло с парой пользователей в users_friends_requests после добавления или удаления друга
+со стороны userId.
+ */
+public enum FriendRequestChange {
+    // Состояние не изменилось
+    NONE,
+    // Создана заявка userId -> friendId
+    CREATED,
+    // Встречная заявка friendId -> userId одобрена
+    APPROVED,
+    // Неодобренная заявка userId -> friendId удалена
+    DELETED,
+    // Одобренная заявка userId -> friendId заменена неодобренной заявкой friendId -> userId
+    REVERSED,
+    // Одобрение встречной заявки friendId -> userId снято
+    UNAPPROVED
+}
@@ -1,63 +1,143 @@
 package ru.yandex.practicum.filmorate.storage.friend_requests;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 
+/*
+Заявки в друзья хранятся в users_friends_requests, чтение идет из FriendGraph:
+после фиксации транзакции граф перечитывает из таблицы строку измененной пары.
+Для пары пользователей в таблице не больше одной строки в любом направлении — это гарантирует
+уникальный индекс по (pair_min, pair_max). Добавление и удаление друга — один MERGE, который
+по текущей строке пары сам выбирает переход; строка пары до или после перехода возвращается
+через OLD TABLE / FINAL TABLE, по ней определяется результат операции.
+Если встречный запрос успел вставить строку пары между проверкой и вставкой,
+MERGE повторяется и видит уже эту строку.
+ */
 @Repository
 @Primary
 @RequiredArgsConstructor
+@Slf4j
 public class FriendRequestDbStorage implements FriendRequestStorage {
+    private static final int MAX_ATTEMPTS = 3;
+
+    private static final String PAIR_SOURCE = """
+            USING (SELECT CAST(? AS INT) AS user_id, CAST(? AS INT) AS friend_id) p
+               ON r.pair_min = LEAST(p.user_id, p.friend_id)
+              AND r.pair_max = GREATEST(p.user_id, p.friend_id)
+            """;
+
+    // Создает заявку userId -> friendId, если у пары еще нет строки, или одобряет встречную заявку
+    private static final String ADD_REQUEST_QUERY = """
+            SELECT user_id
+              FROM FINAL TABLE (
+                   MERGE INTO users_friends_requests r
+                   %s
+                    WHEN MATCHED AND r.user_id = p.friend_id AND r.status = 'unapproved' THEN
+                         UPDATE SET status = 'approved'
+                    WHEN NOT MATCHED THEN
+                         INSERT (user_id, friend_id, status) VALUES (p.user_id, p.friend_id, 'unapproved'))
+            """.formatted(PAIR_SOURCE);
+
+    // Удаляет неодобренную заявку userId -> friendId, разворачивает одобренную
+    // или снимает одобрение со встречной заявки
+    private static final String REMOVE_REQUEST_QUERY = """
+            SELECT user_id,
+                   status
+              FROM OLD TABLE (
+                   MERGE INTO users_friends_requests r
+                   %s
+                    WHEN MATCHED AND r.user_id = p.user_id AND r.status = 'unapproved' THEN
+                         DELETE
+                    WHEN MATCHED AND r.user_id = p.user_id THEN
+                         UPDATE SET user_id = p.friend_id, friend_id = p.user_id, status = 'unapproved'
+                    WHEN MATCHED AND r.status = 'approved' THEN
+                         UPDATE SET status = 'unapproved')
+            """.formatted(PAIR_SOURCE);
+
     private final JdbcTemplate jdbcTemplate;
-    private final SimpleJdbcInsert friendsRequestsJdbcInsert;
+    private final FriendGraph friendGraph;
 
     @Override
     public Optional<FriendRequestStatus> get(int userId, int friendId) {
-        return jdbcTemplate.queryForStream("""
-                        SELECT status
-                          FROM users_friends_requests
-                         WHERE user_id = ?
-                           AND friend_id = ?
-                        """, (rs, rowNum) -> rs.getString("status"), userId, friendId)
-                .map(String::toUpperCase)
-                .map(FriendRequestStatus::valueOf)
-                .findFirst();
+        return friendGraph.status(userId, friendId);
+    }
+
+    @Override
+    public FriendRequestChange addRequest(int userId, int friendId) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                List<Integer> requesters = jdbcTemplate.queryForList(ADD_REQUEST_QUERY, Integer.class,
+                        userId, friendId);
+                if (requesters.isEmpty()) {
+                    return FriendRequestChange.NONE;
+                }
+                AfterCommit.run(() -> friendGraph.refreshPair(userId, friendId));
+                return requesters.getFirst() == userId ? FriendRequestChange.CREATED : FriendRequestChange.APPROVED;
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Concurrent friend request between users {} and {}, retrying", userId, friendId);
+            }
+        }
+    }
+
+    @Override
+    public FriendRequestChange removeRequest(int userId, int friendId) {
+        List<FriendRequestChange> changes = jdbcTemplate.query(REMOVE_REQUEST_QUERY, (rs, rowNum) -> {
+            boolean approved = FriendRequestStatus.valueOf(rs.getString("status").toUpperCase())
+                    == FriendRequestStatus.APPROVED;
+            if (rs.getInt("user_id") != userId) {
+                return FriendRequestChange.UNAPPROVED;
+            }
+            return approved ? FriendRequestChange.REVERSED : FriendRequestChange.DELETED;
+        }, userId, friendId);
+        if (changes.isEmpty()) {
+            return FriendRequestChange.NONE;
+        }
+        AfterCommit.run(() -> friendGraph.refreshPair(userId, friendId));
+        return changes.getFirst();
+    }
+
+    @Override
+    public void deleteByUserId(int userId) {
+        jdbcTemplate.update("DELETE FROM users_friends_requests WHERE user_id = ?", userId);
+        jdbcTemplate.update("DELETE FROM users_friends_requests WHERE friend_id = ?", userId);
+        AfterCommit.run(() -> friendGraph.removeUser(userId));
     }
 
     @Override
-    public void create(int userId, int friendId, FriendRequestStatus status) {
-        Map<String, Object> argsMap = new HashMap<>();
-        argsMap.put("user_id", userId);
-        argsMap.put("friend_id", friendId);
-        argsMap.put("status", status.name().toLowerCase());
+    public int[] getFriendsIds(int userId) {
+        return friendGraph.friends(userId);
+    }
 
-        friendsRequestsJdbcInsert.execute(argsMap);
+    @Override
+    public int[] getCommonFriendsIds(int userId, int otherId) {
+        return friendGraph.commonFriends(userId, otherId);
     }
 
     @Override
-    public void update(int userId, int friendId, FriendRequestStatus status) {
-        jdbcTemplate.update("""
-                UPDATE users_friends_requests
-                   SET status = ?
-                 WHERE user_id = ?
-                   AND friend_id = ?
-                """, status.name().toLowerCase(), userId, friendId);
+    public int[] getFriendSuggestionsIds(int userId, int count) {
+        return friendGraph.suggestions(userId, count);
     }
 
     @Override
-    public void delete(int userId, int friendId) {
-        jdbcTemplate.update("""
-                DELETE
-                  FROM users_friends_requests
-                 WHERE user_id = ?
-                   AND friend_id = ?
-                """, userId, friendId);
+    public int[] getFriendshipPathIds(int userId, int otherId) {
+        return friendGraph.path(userId, otherId);
     }
 
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        friendGraph.rebuild();
+    }
 }
@@ -5,10 +5,18 @@ import java.util.Optional;
 public interface FriendRequestStorage {
     Optional<FriendRequestStatus> get(int userId, int friendId);
 
-    void create(int userId, int friendId, FriendRequestStatus status);
+    FriendRequestChange addRequest(int userId, int friendId);
 
-    void update(int userId, int friendId, FriendRequestStatus status);
+    FriendRequestChange removeRequest(int userId, int friendId);
 
-    void delete(int userId, int friendId);
+    void deleteByUserId(int userId);
+
+    int[] getFriendsIds(int userId);
+
+    int[] getCommonFriendsIds(int userId, int otherId);
+
+    int[] getFriendSuggestionsIds(int userId, int count);
+
+    int[] getFriendshipPathIds(int userId, int otherId);
 
 }
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.storage.friend_requests;
+
+/*
+Отображение положительных int-ключей в int-значения на открытой адресации с линейным пробированием.
+Ключи и значения хранятся в двух массивах int, ноль в keys означает пустую ячейку,
+поэтому подсчет и обход графа не создают объектов на каждый ключ.
+Используется как счетчик общих друзей и как множество посещенных вершин с родителем при поиске пути.
+ */
+final class IntIntMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    void add(int key, int delta) {
+        int i = slot(key);
+        if (keys[i] == key) {
+            values[i] += delta;
+            return;
+        }
+        insert(i, key, delta);
+    }
+
+    // Возвращает false, если ключ уже есть; значение в этом случае не меняется
+    boolean putIfAbsent(int key, int value) {
+        int i = slot(key);
+        if (keys[i] == key) {
+            return false;
+        }
+        insert(i, key, value);
+        return true;
+    }
+
+    boolean containsKey(int key) {
+        return keys[slot(key)] == key;
+    }
+
+    int get(int key, int defaultValue) {
+        int i = slot(key);
+        return keys[i] == key ? values[i] : defaultValue;
+    }
+
+    void addAll(IntIntMap other) {
+        other.forEach(this::add);
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(EntryConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    // Ячейка с ключом key или пустая ячейка, в которую его следует вставить
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void insert(int i, int key, int value) {
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(int key, int value);
+    }
+}
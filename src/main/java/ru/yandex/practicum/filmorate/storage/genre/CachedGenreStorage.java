@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.genre;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.CacheCounters;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+Кэш справочника жанров поверх GenreDbStorage. Таблица genres заполняется из data.sql
+и во время работы приложения не меняется, поэтому весь справочник загружается один раз
+и дальше getAll, getById и checkGenreExists обслуживаются из памяти.
+Если запрошенного id нет в кэше, справочник перечитывается из БД.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+@Slf4j
+public class CachedGenreStorage implements GenreStorage {
+    private final GenreDbStorage genreDbStorage;
+    private final CacheCounters counters = new CacheCounters();
+    private volatile Map<Integer, Genre> genres;
+
+    @Override
+    public Collection<Genre> getAll() {
+        if (genres != null) {
+            counters.hit();
+        } else {
+            counters.miss();
+        }
+        return genres().values();
+    }
+
+    @Override
+    public Genre getById(int id) {
+        Genre genre = genres().get(id);
+        if (genre != null) {
+            counters.hit();
+            return genre;
+        }
+        counters.miss();
+        genreDbStorage.checkGenreExists(id);
+        invalidate();
+        return genres().get(id);
+    }
+
+    @Override
+    public void checkGenreExists(int id) {
+        getById(id);
+    }
+
+    @Override
+    public void checkGenresExist(Collection<Integer> ids) {
+        if (genres().keySet().containsAll(ids)) {
+            counters.hit();
+            return;
+        }
+        counters.miss();
+        genreDbStorage.checkGenresExist(ids);
+        invalidate();
+    }
+
+    public void invalidate() {
+        genres = null;
+    }
+
+    public CacheCounters getCounters() {
+        return counters;
+    }
+
+    private Map<Integer, Genre> genres() {
+        Map<Integer, Genre> snapshot = genres;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Map<Integer, Genre> loaded = new LinkedHashMap<>();
+        genreDbStorage.getAll().stream()
+                .sorted(Comparator.comparingInt(Genre::getId))
+                .forEach(genre -> loaded.put(genre.getId(), genre));
+        snapshot = Collections.unmodifiableMap(loaded);
+        genres = snapshot;
+        log.debug("Genres cache loaded: {} entries, {}", snapshot.size(), counters);
+        return snapshot;
+    }
+}
@@ -2,20 +2,24 @@ package ru.yandex.practicum.filmorate.storage.genre;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 @Repository
-@Primary
 @RequiredArgsConstructor
 @Slf4j
 public class GenreDbStorage implements GenreStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
 
     @Override
     public Collection<Genre> getAll() {
@@ -38,4 +42,25 @@ public class GenreDbStorage implements GenreStorage {
             throw new NotFoundException(reason);
         }
     }
+
+    @Override
+    public void checkGenresExist(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Set<Integer> foundIds = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM genres WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids), Integer.class));
+        List<Integer> missingIds = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .sorted()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            String reason = missingIds.size() == 1
+                    ? String.format("genre with id %d not found", missingIds.getFirst())
+                    : String.format("genres with ids %s not found", missingIds);
+            log.warn("Validation failed: {}", reason);
+            throw new NotFoundException(reason);
+        }
+    }
 }
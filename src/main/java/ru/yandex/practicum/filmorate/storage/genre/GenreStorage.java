@@ -10,4 +10,6 @@ public interface GenreStorage {
     Genre getById(int id);
 
     void checkGenreExists(int id);
+
+    void checkGenresExist(Collection<Integer> ids);
 }
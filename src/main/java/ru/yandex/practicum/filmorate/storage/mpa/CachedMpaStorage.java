@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.storage.mpa;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.CacheCounters;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+Кэш справочника рейтингов MPA поверх MpaDbStorage, устроен так же, как CachedGenreStorage.
+ */
+@Repository
+@Primary
+@RequiredArgsConstructor
+@Slf4j
+public class CachedMpaStorage implements MpaStorage {
+    private final MpaDbStorage mpaDbStorage;
+    private final CacheCounters counters = new CacheCounters();
+    private volatile Map<Integer, Mpa> ratings;
+
+    @Override
+    public Collection<Mpa> getAll() {
+        if (ratings != null) {
+            counters.hit();
+        } else {
+            counters.miss();
+        }
+        return ratings().values();
+    }
+
+    @Override
+    public Mpa getById(int id) {
+        Mpa mpa = ratings().get(id);
+        if (mpa != null) {
+            counters.hit();
+            return mpa;
+        }
+        counters.miss();
+        mpaDbStorage.checkMpaExists(id);
+        invalidate();
+        return ratings().get(id);
+    }
+
+    @Override
+    public void checkMpaExists(int id) {
+        getById(id);
+    }
+
+    public void invalidate() {
+        ratings = null;
+    }
+
+    public CacheCounters getCounters() {
+        return counters;
+    }
+
+    private Map<Integer, Mpa> ratings() {
+        Map<Integer, Mpa> snapshot = ratings;
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Map<Integer, Mpa> loaded = new LinkedHashMap<>();
+        mpaDbStorage.getAll().stream()
+                .sorted(Comparator.comparingInt(Mpa::getId))
+                .forEach(mpa -> loaded.put(mpa.getId(), mpa));
+        snapshot = Collections.unmodifiableMap(loaded);
+        ratings = snapshot;
+        log.debug("Mpa cache loaded: {} entries, {}", snapshot.size(), counters);
+        return snapshot;
+    }
+}
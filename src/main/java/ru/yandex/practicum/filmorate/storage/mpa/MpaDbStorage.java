@@ -2,7 +2,6 @@ package ru.yandex.practicum.filmorate.storage.mpa;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -11,7 +10,6 @@ import ru.yandex.practicum.filmorate.model.Mpa;
 import java.util.Collection;
 
 @Repository
-@Primary
 @RequiredArgsConstructor
 @Slf4j
 public class MpaDbStorage implements MpaStorage {
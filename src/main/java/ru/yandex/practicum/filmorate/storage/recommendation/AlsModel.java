@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Модель рекомендаций на основе матричной факторизации неявных оценок (implicit ALS, Hu, Koren, Volinsky).
+Лайк считается наблюдением с весом 1 + CONFIDENCE_ALPHA, отсутствие лайка — нулем с весом 1.
+Векторы пользователей и фильмов длины FACTORS хранятся подряд в массивах float;
+на каждой итерации поочередно решаются системы FACTORS x FACTORS для всех пользователей
+при фиксированных фильмах и наоборот, строки считаются параллельно в ForkJoinPool.
+Рекомендации — непросмотренные фильмы с наибольшим скалярным произведением векторов.
+Обученная модель неизменяема и подменяется целиком, так что чтение не блокируется переобучением.
+Пользователи и фильмы, появившиеся после обучения, попадут в модель при следующем переобучении.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AlsModel {
+    static final int FACTORS = 32;
+    private static final int ITERATIONS = 10;
+    private static final double REGULARIZATION = 0.1;
+    private static final double CONFIDENCE_ALPHA = 20;
+    private static final int FORK_THRESHOLD = 64;
+    private static final long RANDOM_SEED = 42;
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Factors factors;
+
+    public void retrain() {
+        List<int[]> likes = new ArrayList<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM users_films_likes", rs -> {
+            likes.add(new int[]{rs.getInt("user_id"), rs.getInt("film_id")});
+        });
+        int[] userIds = new int[likes.size()];
+        int[] filmIds = new int[likes.size()];
+        for (int i = 0; i < likes.size(); i++) {
+            userIds[i] = likes.get(i)[0];
+            filmIds[i] = likes.get(i)[1];
+        }
+        train(userIds, filmIds);
+    }
+
+    // Обучает модель на парах (userIds[i], filmIds[i]) и подменяет текущую
+    public void train(int[] userIds, int[] filmIds) {
+        long start = System.currentTimeMillis();
+        Map<Integer, Integer> usersIndex = new HashMap<>();
+        Map<Integer, Integer> filmsIndex = new HashMap<>();
+        int[] userRows = new int[userIds.length];
+        int[] filmRows = new int[filmIds.length];
+        for (int i = 0; i < userIds.length; i++) {
+            userRows[i] = usersIndex.computeIfAbsent(userIds[i], id -> usersIndex.size());
+            filmRows[i] = filmsIndex.computeIfAbsent(filmIds[i], id -> filmsIndex.size());
+        }
+        int usersCount = usersIndex.size();
+        int filmsCount = filmsIndex.size();
+        Rows usersFilms = Rows.of(usersCount, userRows, filmRows);
+        Rows filmsUsers = Rows.of(filmsCount, filmRows, userRows);
+
+        Random random = new Random(RANDOM_SEED);
+        float[] userFactors = new float[usersCount * FACTORS];
+        float[] filmFactors = new float[filmsCount * FACTORS];
+        for (int i = 0; i < filmFactors.length; i++) {
+            filmFactors[i] = (float) (random.nextGaussian() * 0.01);
+        }
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            solve(usersFilms, filmFactors, filmsCount, userFactors);
+            solve(filmsUsers, userFactors, usersCount, filmFactors);
+        }
+
+        int[] filmsIds = new int[filmsCount];
+        filmsIndex.forEach((filmId, row) -> filmsIds[row] = filmId);
+        factors = new Factors(usersIndex, filmsIds, userFactors, filmFactors);
+        log.info("ALS model trained: {} users, {} films, {} likes in {} ms", usersCount, filmsCount,
+                userIds.length, System.currentTimeMillis() - start);
+    }
+
+    /*
+    Возвращает id до count фильмов с наибольшей оценкой модели, исключая userLikes,
+    по убыванию оценки. Для пользователя, которого нет в модели, возвращается пустой список.
+     */
+    public List<Integer> recommend(int userId, IntBitmap userLikes, int count) {
+        Factors current = factors;
+        Integer userRow = current != null ? current.usersIndex().get(userId) : null;
+        if (userRow == null) {
+            return List.of();
+        }
+        float[] userFactors = current.userFactors();
+        float[] filmFactors = current.filmFactors();
+        int[] filmsIds = current.filmsIds();
+        int userOffset = userRow * FACTORS;
+        int[] topFilms = new int[count];
+        float[] topScores = new float[count];
+        int size = 0;
+        for (int film = 0; film < filmsIds.length; film++) {
+            if (userLikes.contains(filmsIds[film])) {
+                continue;
+            }
+            int filmOffset = film * FACTORS;
+            float score = 0;
+            for (int f = 0; f < FACTORS; f++) {
+                score += userFactors[userOffset + f] * filmFactors[filmOffset + f];
+            }
+            if (size == count && score <= topScores[size - 1]) {
+                continue;
+            }
+            int i = size < count ? size++ : size - 1;
+            while (i > 0 && topScores[i - 1] < score) {
+                topScores[i] = topScores[i - 1];
+                topFilms[i] = topFilms[i - 1];
+                i--;
+            }
+            topScores[i] = score;
+            topFilms[i] = filmsIds[film];
+        }
+        return Arrays.stream(topFilms, 0, size).boxed().toList();
+    }
+
+    /*
+    Пересчитывает векторы строк target при фиксированных векторах fixed.
+    Общая часть системы YtY + REGULARIZATION * I считается один раз, к ней для каждой строки
+    добавляется CONFIDENCE_ALPHA * y * yt по ее лайкам.
+     */
+    private static void solve(Rows rows, float[] fixed, int fixedCount, float[] target) {
+        double[] gram = new double[FACTORS * FACTORS];
+        for (int row = 0; row < fixedCount; row++) {
+            int offset = row * FACTORS;
+            for (int i = 0; i < FACTORS; i++) {
+                double value = fixed[offset + i];
+                for (int j = 0; j < FACTORS; j++) {
+                    gram[i * FACTORS + j] += value * fixed[offset + j];
+                }
+            }
+        }
+        for (int i = 0; i < FACTORS; i++) {
+            gram[i * FACTORS + i] += REGULARIZATION;
+        }
+        ForkJoinPool.commonPool().invoke(new SolveTask(rows, fixed, gram, target, 0, rows.count()));
+    }
+
+    // Решает систему a * x = b с симметричной положительно определенной матрицей разложением Холецкого
+    private static void choleskySolve(double[] a, double[] b) {
+        for (int j = 0; j < FACTORS; j++) {
+            double diagonal = a[j * FACTORS + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= a[j * FACTORS + k] * a[j * FACTORS + k];
+            }
+            diagonal = Math.sqrt(diagonal);
+            a[j * FACTORS + j] = diagonal;
+            for (int i = j + 1; i < FACTORS; i++) {
+                double value = a[i * FACTORS + j];
+                for (int k = 0; k < j; k++) {
+                    value -= a[i * FACTORS + k] * a[j * FACTORS + k];
+                }
+                a[i * FACTORS + j] = value / diagonal;
+            }
+        }
+        for (int i = 0; i < FACTORS; i++) {
+            double value = b[i];
+            for (int k = 0; k < i; k++) {
+                value -= a[i * FACTORS + k] * b[k];
+            }
+            b[i] = value / a[i * FACTORS + i];
+        }
+        for (int i = FACTORS - 1; i >= 0; i--) {
+            double value = b[i];
+            for (int k = i + 1; k < FACTORS; k++) {
+                value -= a[k * FACTORS + i] * b[k];
+            }
+            b[i] = value / a[i * FACTORS + i];
+        }
+    }
+
+    private record Factors(Map<Integer, Integer> usersIndex, int[] filmsIds, float[] userFactors,
+                           float[] filmFactors) {
+    }
+
+    // Лайки в виде списков смежности: столбцы строки row лежат в columns[offsets[row]..offsets[row + 1])
+    private record Rows(int[] offsets, int[] columns) {
+        static Rows of(int count, int[] rows, int[] columns) {
+            int[] offsets = new int[count + 1];
+            for (int row : rows) {
+                offsets[row + 1]++;
+            }
+            for (int i = 0; i < count; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] positions = Arrays.copyOf(offsets, count);
+            int[] sorted = new int[columns.length];
+            for (int i = 0; i < rows.length; i++) {
+                sorted[positions[rows[i]]++] = columns[i];
+            }
+            return new Rows(offsets, sorted);
+        }
+
+        int count() {
+            return offsets.length - 1;
+        }
+    }
+
+    private static final class SolveTask extends RecursiveAction {
+        private final Rows rows;
+        private final float[] fixed;
+        private final double[] gram;
+        private final float[] target;
+        private final int from;
+        private final int to;
+
+        SolveTask(Rows rows, float[] fixed, double[] gram, float[] target, int from, int to) {
+            this.rows = rows;
+            this.fixed = fixed;
+            this.gram = gram;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FORK_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SolveTask(rows, fixed, gram, target, from, middle),
+                        new SolveTask(rows, fixed, gram, target, middle, to));
+                return;
+            }
+            double[] a = new double[FACTORS * FACTORS];
+            double[] b = new double[FACTORS];
+            for (int row = from; row < to; row++) {
+                System.arraycopy(gram, 0, a, 0, a.length);
+                Arrays.fill(b, 0);
+                for (int k = rows.offsets()[row]; k < rows.offsets()[row + 1]; k++) {
+                    int offset = rows.columns()[k] * FACTORS;
+                    for (int i = 0; i < FACTORS; i++) {
+                        double value = fixed[offset + i];
+                        b[i] += (1 + CONFIDENCE_ALPHA) * value;
+                        for (int j = 0; j <= i; j++) {
+                            a[i * FACTORS + j] += CONFIDENCE_ALPHA * value * fixed[offset + j];
+                        }
+                    }
+                }
+                choleskySolve(a, b);
+                for (int i = 0; i < FACTORS; i++) {
+                    target[row * FACTORS + i] = (float) b[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/*
+Модель «с этим фильмом также лайкают» на основе совместной встречаемости лайков.
+Для каждого фильма хранится IntBitmap пользователей, которые его лайкнули, и до NEIGHBOURS_COUNT
+похожих фильмов с наибольшим числом общих пользователей.
+Полный пересчет выполняется при старте и периодически в фоне, фильмы обрабатываются параллельно
+в ForkJoinPool. Между пересчетами изменения лайков только ставятся в очередь, а applyChanges
+разбирает ее в фоне: для фильма и остальных фильмов пользователя число общих пользователей
+пересчитывается пересечением множеств. Поэтому лайк не тратит время на обновление модели,
+а похожие фильмы отстают от лайков не больше чем на filmorate.recommendations.similarity.update-interval-ms.
+Фильм, выпавший из топа при удалении лайка, может вернуться в него только после полного пересчета.
+Пересчет и applyChanges выполняются под одной блокировкой, а пересчитанные таблицы подменяют старые
+целиком. Изменения, пришедшие во время пересчета, остаются в очереди и применяются поверх него;
+повторное применение изменения, уже попавшего в выборку из БД, ничего не меняет.
+В очереди хранится одно, последнее изменение на пару пользователь-фильм. Если в ней накопилось
+больше MAX_PENDING_CHANGES изменений, очередь сбрасывается, а applyChanges вместо разбора
+выполняет полный пересчет: все сброшенные изменения к этому моменту уже зафиксированы в БД.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FilmSimilarityModel {
+    static final int NEIGHBOURS_COUNT = 20;
+    static final int MAX_PENDING_CHANGES = 100_000;
+    private static final int FORK_THRESHOLD = 64;
+    private static final Comparator<SimilarFilm> SIMILAR_FILM_ORDER = Comparator.comparingInt(SimilarFilm::commonLikes)
+            .reversed()
+            .thenComparingInt(SimilarFilm::filmId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Map<Integer, IntBitmap> filmsUsers = new ConcurrentHashMap<>();
+    private volatile Map<Integer, SimilarFilm[]> similarFilms = new ConcurrentHashMap<>();
+    // Порядок — по последнему изменению пары; доступ под блокировкой самого отображения
+    private final Map<ChangeKey, Runnable> pendingChanges = new LinkedHashMap<>();
+    private boolean pendingOverflow;
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.similarity.rebuild-interval-ms:600000}",
+            fixedDelayString = "${filmorate.recommendations.similarity.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        Map<Integer, List<Integer>> filmsLikes = new HashMap<>();
+        Map<Integer, List<Integer>> usersLikes = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM users_films_likes", rs -> {
+            int userId = rs.getInt("user_id");
+            int filmId = rs.getInt("film_id");
+            filmsLikes.computeIfAbsent(filmId, id -> new ArrayList<>()).add(userId);
+            usersLikes.computeIfAbsent(userId, id -> new ArrayList<>()).add(filmId);
+        });
+        Map<Integer, IntBitmap> users = new HashMap<>();
+        filmsLikes.forEach((filmId, usersIds) -> users.put(filmId, IntBitmap.of(toArray(usersIds))));
+        Map<Integer, IntBitmap> films = new HashMap<>();
+        usersLikes.forEach((userId, filmsIds) -> films.put(userId, IntBitmap.of(toArray(filmsIds))));
+
+        int[] filmsIds = toArray(filmsLikes.keySet());
+        Map<Integer, SimilarFilm[]> similar = new ConcurrentHashMap<>();
+        ForkJoinPool.commonPool().invoke(new SimilarFilmsTask(filmsIds, 0, filmsIds.length, users, films, similar));
+
+        filmsUsers = new ConcurrentHashMap<>(users);
+        similarFilms = similar;
+        log.info("Film similarity model rebuilt: {} films in {} ms", filmsIds.length,
+                System.currentTimeMillis() - start);
+    }
+
+    // userLikes — фильмы пользователя с учетом нового лайка
+    public void addLike(int userId, int filmId, IntBitmap userLikes) {
+        enqueue(new ChangeKey(userId, filmId), () -> {
+            filmsUsers.merge(filmId, IntBitmap.EMPTY.with(userId), (current, added) -> current.with(userId));
+            updatePairs(filmId, userLikes);
+        });
+    }
+
+    // userLikes — фильмы пользователя без удаленного лайка
+    public void removeLike(int userId, int filmId, IntBitmap userLikes) {
+        enqueue(new ChangeKey(userId, filmId), () -> {
+            removeUserFromFilm(userId, filmId);
+            updatePairs(filmId, userLikes);
+        });
+    }
+
+    // userLikes — все фильмы удаленного пользователя
+    public void removeUser(int userId, IntBitmap userLikes) {
+        enqueue(new ChangeKey(userId, 0), () -> {
+            userLikes.forEach(filmId -> removeUserFromFilm(userId, filmId));
+            userLikes.forEach(filmId -> updatePairs(filmId, userLikes));
+        });
+    }
+
+    public void removeFilm(int filmId) {
+        enqueue(new ChangeKey(0, filmId), () -> {
+            filmsUsers.remove(filmId);
+            similarFilms.remove(filmId);
+            similarFilms.replaceAll((id, neighbours) -> without(neighbours, filmId));
+        });
+    }
+
+    // Применяет накопившиеся изменения лайков в порядке их поступления
+    @Scheduled(fixedDelayString = "${filmorate.recommendations.similarity.update-interval-ms:1000}")
+    public synchronized void applyChanges() {
+        List<Runnable> changes;
+        boolean overflow;
+        synchronized (pendingChanges) {
+            changes = List.copyOf(pendingChanges.values());
+            pendingChanges.clear();
+            overflow = pendingOverflow;
+            pendingOverflow = false;
+        }
+        if (overflow) {
+            rebuild();
+            return;
+        }
+        changes.forEach(Runnable::run);
+    }
+
+    // До count похожих фильмов по убыванию числа общих лайков
+    public List<Integer> similar(int filmId, int count) {
+        SimilarFilm[] neighbours = similarFilms.getOrDefault(filmId, new SimilarFilm[0]);
+        return Arrays.stream(neighbours)
+                .limit(count)
+                .map(SimilarFilm::filmId)
+                .toList();
+    }
+
+    /*
+    Рекомендации по лайкам пользователя без учета других пользователей: фильмы, похожие
+    на понравившиеся, ранжируются по сумме числа общих лайков, при равенстве — по id.
+     */
+    public List<Integer> recommend(IntBitmap userLikes) {
+        Map<Integer, Integer> scores = new HashMap<>();
+        userLikes.forEach(filmId -> {
+            for (SimilarFilm neighbour : similarFilms.getOrDefault(filmId, new SimilarFilm[0])) {
+                if (!userLikes.contains(neighbour.filmId())) {
+                    scores.merge(neighbour.filmId(), neighbour.commonLikes(), Integer::sum);
+                }
+            }
+        });
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    // Заменяет ожидающее изменение той же пары и переносит его в конец очереди
+    private void enqueue(ChangeKey key, Runnable change) {
+        synchronized (pendingChanges) {
+            if (pendingOverflow) {
+                return;
+            }
+            pendingChanges.remove(key);
+            pendingChanges.put(key, change);
+            if (pendingChanges.size() > MAX_PENDING_CHANGES) {
+                pendingChanges.clear();
+                pendingOverflow = true;
+                log.warn("Film similarity model: more than {} pending changes, full rebuild scheduled",
+                        MAX_PENDING_CHANGES);
+            }
+        }
+    }
+
+    private void removeUserFromFilm(int userId, int filmId) {
+        filmsUsers.computeIfPresent(filmId, (id, current) -> {
+            IntBitmap updated = current.without(userId);
+            return updated.isEmpty() ? null : updated;
+        });
+    }
+
+    private void updatePairs(int filmId, IntBitmap userLikes) {
+        IntBitmap users = filmsUsers.getOrDefault(filmId, IntBitmap.EMPTY);
+        userLikes.forEach(otherFilmId -> {
+            if (otherFilmId == filmId) {
+                return;
+            }
+            int commonLikes = users.andCardinality(filmsUsers.getOrDefault(otherFilmId, IntBitmap.EMPTY));
+            similarFilms.compute(filmId, (id, neighbours) -> with(neighbours, otherFilmId, commonLikes));
+            similarFilms.compute(otherFilmId, (id, neighbours) -> with(neighbours, filmId, commonLikes));
+        });
+    }
+
+    private static SimilarFilm[] with(SimilarFilm[] neighbours, int filmId, int commonLikes) {
+        List<SimilarFilm> updated = new ArrayList<>(NEIGHBOURS_COUNT + 1);
+        if (neighbours != null) {
+            Arrays.stream(neighbours).filter(neighbour -> neighbour.filmId() != filmId).forEach(updated::add);
+        }
+        if (commonLikes > 0) {
+            updated.add(new SimilarFilm(filmId, commonLikes));
+        }
+        if (updated.isEmpty()) {
+            return null;
+        }
+        return updated.stream().sorted(SIMILAR_FILM_ORDER).limit(NEIGHBOURS_COUNT).toArray(SimilarFilm[]::new);
+    }
+
+    private static SimilarFilm[] without(SimilarFilm[] neighbours, int filmId) {
+        return Arrays.stream(neighbours).filter(neighbour -> neighbour.filmId() != filmId).toArray(SimilarFilm[]::new);
+    }
+
+    private static int[] toArray(Collection<Integer> values) {
+        return values.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private record SimilarFilm(int filmId, int commonLikes) {
+    }
+
+    // filmId = 0 — удаление пользователя, userId = 0 — удаление фильма
+    private record ChangeKey(int userId, int filmId) {
+    }
+
+    /*
+    Считает похожие фильмы для filmsIds[from..to): для каждого фильма перебираются фильмы
+    его пользователей, так что затрагиваются только пары с общими лайками.
+     */
+    private static final class SimilarFilmsTask extends RecursiveAction {
+        private final int[] filmsIds;
+        private final int from;
+        private final int to;
+        private final Map<Integer, IntBitmap> filmsUsers;
+        private final Map<Integer, IntBitmap> usersFilms;
+        private final Map<Integer, SimilarFilm[]> result;
+
+        SimilarFilmsTask(int[] filmsIds, int from, int to, Map<Integer, IntBitmap> filmsUsers,
+                         Map<Integer, IntBitmap> usersFilms, Map<Integer, SimilarFilm[]> result) {
+            this.filmsIds = filmsIds;
+            this.from = from;
+            this.to = to;
+            this.filmsUsers = filmsUsers;
+            this.usersFilms = usersFilms;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > FORK_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SimilarFilmsTask(filmsIds, from, middle, filmsUsers, usersFilms, result),
+                        new SimilarFilmsTask(filmsIds, middle, to, filmsUsers, usersFilms, result));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                int filmId = filmsIds[i];
+                Map<Integer, Integer> commonLikes = new HashMap<>();
+                filmsUsers.get(filmId).forEach(userId -> usersFilms.get(userId).forEach(otherFilmId -> {
+                    if (otherFilmId != filmId) {
+                        commonLikes.merge(otherFilmId, 1, Integer::sum);
+                    }
+                }));
+                SimilarFilm[] neighbours = commonLikes.entrySet().stream()
+                        .map(entry -> new SimilarFilm(entry.getKey(), entry.getValue()))
+                        .sorted(SIMILAR_FILM_ORDER)
+                        .limit(NEIGHBOURS_COUNT)
+                        .toArray(SimilarFilm[]::new);
+                if (neighbours.length > 0) {
+                    result.put(filmId, neighbours);
+                }
+            }
+        }
+    }
+}
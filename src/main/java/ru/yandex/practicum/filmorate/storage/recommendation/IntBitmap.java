@@ -0,0 +1,317 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/*
+Неизменяемое сжатое множество id (фильмов или пользователей) по схеме Roaring bitmap.
+Значения делятся на блоки по старшим 16 битам; блок хранится отсортированным массивом char,
+пока в нем не больше ARRAY_CONTAINER_MAX_SIZE значений, и битовой картой из 1024 long — если больше.
+Для типичного пользователя с десятками лайков это один небольшой массив,
+а пересечение двух множеств считается без создания объектов.
+with и without возвращают новое множество, копируя только измененный блок.
+ */
+final class IntBitmap {
+    static final IntBitmap EMPTY = new IntBitmap(new char[0], new Container[0]);
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1 << 10;
+
+    private final char[] keys;
+    private final Container[] containers;
+
+    private IntBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    static IntBitmap of(int[] values) {
+        int[] sorted = Arrays.stream(values).sorted().distinct().toArray();
+        IntBitmap bitmap = EMPTY;
+        int from = 0;
+        while (from < sorted.length) {
+            char key = high(sorted[from]);
+            int to = from;
+            while (to < sorted.length && high(sorted[to]) == key) {
+                to++;
+            }
+            char[] lows = new char[to - from];
+            for (int i = from; i < to; i++) {
+                lows[i - from] = low(sorted[i]);
+            }
+            bitmap = bitmap.withContainer(key, ArrayContainer.of(lows));
+            from = to;
+        }
+        return bitmap;
+    }
+
+    boolean contains(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        return i >= 0 && containers[i].contains(low(value));
+    }
+
+    IntBitmap with(int value) {
+        char key = high(value);
+        int i = Arrays.binarySearch(keys, key);
+        if (i >= 0) {
+            Container updated = containers[i].add(low(value));
+            return updated == containers[i] ? this : replace(i, updated);
+        }
+        return withContainer(key, new ArrayContainer(new char[]{low(value)}));
+    }
+
+    IntBitmap without(int value) {
+        int i = Arrays.binarySearch(keys, high(value));
+        if (i < 0) {
+            return this;
+        }
+        Container updated = containers[i].remove(low(value));
+        if (updated == containers[i]) {
+            return this;
+        }
+        if (updated != null) {
+            return replace(i, updated);
+        }
+        char[] newKeys = new char[keys.length - 1];
+        Container[] newContainers = new Container[containers.length - 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(keys, i + 1, newKeys, i, keys.length - i - 1);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        System.arraycopy(containers, i + 1, newContainers, i, containers.length - i - 1);
+        return new IntBitmap(newKeys, newContainers);
+    }
+
+    boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    int cardinality() {
+        int cardinality = 0;
+        for (Container container : containers) {
+            cardinality += container.cardinality();
+        }
+        return cardinality;
+    }
+
+    // Размер пересечения с other
+    int andCardinality(IntBitmap other) {
+        int result = 0;
+        int i = 0;
+        int j = 0;
+        while (i < keys.length && j < other.keys.length) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result += containers[i].andCardinality(other.containers[j]);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Перебирает значения в порядке возрастания
+    void forEach(IntConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    int[] toArray() {
+        int[] result = new int[cardinality()];
+        int[] position = {0};
+        forEach(value -> result[position[0]++] = value);
+        return result;
+    }
+
+    private IntBitmap replace(int i, Container container) {
+        Container[] newContainers = containers.clone();
+        newContainers[i] = container;
+        return new IntBitmap(keys, newContainers);
+    }
+
+    private IntBitmap withContainer(char key, Container container) {
+        int i = -Arrays.binarySearch(keys, key) - 1;
+        char[] newKeys = new char[keys.length + 1];
+        Container[] newContainers = new Container[containers.length + 1];
+        System.arraycopy(keys, 0, newKeys, 0, i);
+        System.arraycopy(keys, i, newKeys, i + 1, keys.length - i);
+        System.arraycopy(containers, 0, newContainers, 0, i);
+        System.arraycopy(containers, i, newContainers, i + 1, containers.length - i);
+        newKeys[i] = key;
+        newContainers[i] = container;
+        return new IntBitmap(newKeys, newContainers);
+    }
+
+    private static char high(int value) {
+        return (char) (value >>> 16);
+    }
+
+    private static char low(int value) {
+        return (char) value;
+    }
+
+    private sealed interface Container permits ArrayContainer, BitmapContainer {
+        boolean contains(char value);
+
+        // Возвращает этот же блок, если значение уже есть
+        Container add(char value);
+
+        // Возвращает этот же блок, если значения нет, и null, если блок опустел
+        Container remove(char value);
+
+        int cardinality();
+
+        int andCardinality(Container other);
+
+        void forEach(int base, IntConsumer consumer);
+    }
+
+    private record ArrayContainer(char[] values) implements Container {
+        static Container of(char[] sortedValues) {
+            if (sortedValues.length <= ARRAY_CONTAINER_MAX_SIZE) {
+                return new ArrayContainer(sortedValues);
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (char value : sortedValues) {
+                words[value >>> 6] |= 1L << value;
+            }
+            return new BitmapContainer(words, sortedValues.length);
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, value) >= 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            int i = Arrays.binarySearch(values, value);
+            if (i >= 0) {
+                return this;
+            }
+            i = -i - 1;
+            char[] newValues = new char[values.length + 1];
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(values, i, newValues, i + 1, values.length - i);
+            newValues[i] = value;
+            return of(newValues);
+        }
+
+        @Override
+        public Container remove(char value) {
+            int i = Arrays.binarySearch(values, value);
+            if (i < 0) {
+                return this;
+            }
+            if (values.length == 1) {
+                return null;
+            }
+            char[] newValues = new char[values.length - 1];
+            System.arraycopy(values, 0, newValues, 0, i);
+            System.arraycopy(values, i + 1, newValues, i, values.length - i - 1);
+            return new ArrayContainer(newValues);
+        }
+
+        @Override
+        public int cardinality() {
+            return values.length;
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            if (other instanceof BitmapContainer bitmap) {
+                return bitmap.andCardinality(this);
+            }
+            char[] otherValues = ((ArrayContainer) other).values;
+            int result = 0;
+            int i = 0;
+            int j = 0;
+            while (i < values.length && j < otherValues.length) {
+                if (values[i] < otherValues[j]) {
+                    i++;
+                } else if (values[i] > otherValues[j]) {
+                    j++;
+                } else {
+                    result++;
+                    i++;
+                    j++;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (char value : values) {
+                consumer.accept(base | value);
+            }
+        }
+    }
+
+    private record BitmapContainer(long[] words, int cardinality) implements Container {
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        public Container add(char value) {
+            if (contains(value)) {
+                return this;
+            }
+            long[] newWords = words.clone();
+            newWords[value >>> 6] |= 1L << value;
+            return new BitmapContainer(newWords, cardinality + 1);
+        }
+
+        @Override
+        public Container remove(char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            if (cardinality - 1 <= ARRAY_CONTAINER_MAX_SIZE) {
+                char[] values = new char[cardinality - 1];
+                int[] position = {0};
+                forEach(0, v -> {
+                    if (v != value) {
+                        values[position[0]++] = (char) v;
+                    }
+                });
+                return new ArrayContainer(values);
+            }
+            long[] newWords = words.clone();
+            newWords[value >>> 6] &= ~(1L << value);
+            return new BitmapContainer(newWords, cardinality - 1);
+        }
+
+        @Override
+        public int andCardinality(Container other) {
+            int result = 0;
+            if (other instanceof BitmapContainer bitmap) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result += Long.bitCount(words[i] & bitmap.words[i]);
+                }
+            } else {
+                for (char value : ((ArrayContainer) other).values) {
+                    if (contains(value)) {
+                        result++;
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void forEach(int base, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+    }
+}
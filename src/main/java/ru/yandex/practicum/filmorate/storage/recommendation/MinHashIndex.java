@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/*
+LSH-индекс пользователей по MinHash-сигнатурам их лайков.
+Сигнатура — SIGNATURE_SIZE минимумов независимых хеш-функций по id понравившихся фильмов;
+вероятность совпадения одной позиции у двух пользователей равна коэффициенту Жаккара их множеств.
+Сигнатура делится на полосы по ROWS_PER_BAND позиций, и пользователь попадает в одну корзину
+на каждую полосу. Кандидаты в соседи — пользователи, совпавшие хотя бы в одной полосе;
+при двух позициях в полосе пользователи с похожестью 0.3 находятся с вероятностью около 95%.
+Класс потокобезопасен, методы синхронизированы.
+ */
+final class MinHashIndex {
+    static final int SIGNATURE_SIZE = 64;
+    static final int ROWS_PER_BAND = 2;
+    private static final int BANDS = SIGNATURE_SIZE / ROWS_PER_BAND;
+    private static final long PRIME = (1L << 31) - 1;
+    private static final long SEED = 42;
+
+    private final long[] multipliers = new long[SIGNATURE_SIZE];
+    private final long[] increments = new long[SIGNATURE_SIZE];
+    private final Map<Integer, int[]> signatures = new HashMap<>();
+    private final Map<Long, Set<Integer>>[] bands;
+
+    @SuppressWarnings("unchecked")
+    MinHashIndex() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            multipliers[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            increments[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+        bands = new Map[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            bands[band] = new HashMap<>();
+        }
+    }
+
+    synchronized void clear() {
+        signatures.clear();
+        for (Map<Long, Set<Integer>> buckets : bands) {
+            buckets.clear();
+        }
+    }
+
+    // Пересчитывает сигнатуру пользователя по всем его лайкам
+    synchronized void put(int userId, IntBitmap likes) {
+        remove(userId);
+        if (likes.isEmpty()) {
+            return;
+        }
+        int[] signature = new int[SIGNATURE_SIZE];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        likes.forEach(filmId -> update(signature, filmId));
+        index(userId, signature);
+    }
+
+    // Добавление лайка только уменьшает минимумы, поэтому полный пересчет не нужен
+    synchronized void add(int userId, int filmId) {
+        int[] signature = remove(userId);
+        if (signature == null) {
+            signature = new int[SIGNATURE_SIZE];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+        }
+        update(signature, filmId);
+        index(userId, signature);
+    }
+
+    synchronized int[] remove(int userId) {
+        int[] signature = signatures.remove(userId);
+        if (signature != null) {
+            for (int band = 0; band < BANDS; band++) {
+                long key = bandKey(signature, band);
+                Set<Integer> users = bands[band].get(key);
+                if (users != null && users.remove(userId) && users.isEmpty()) {
+                    bands[band].remove(key);
+                }
+            }
+        }
+        return signature;
+    }
+
+    // Пользователи, совпавшие с userId хотя бы в одной полосе, без него самого
+    synchronized Set<Integer> candidates(int userId) {
+        int[] signature = signatures.get(userId);
+        if (signature == null) {
+            return Set.of();
+        }
+        Set<Integer> candidates = new HashSet<>();
+        for (int band = 0; band < BANDS; band++) {
+            candidates.addAll(bands[band].getOrDefault(bandKey(signature, band), Set.of()));
+        }
+        candidates.remove(userId);
+        return candidates;
+    }
+
+    private void update(int[] signature, int filmId) {
+        for (int i = 0; i < SIGNATURE_SIZE; i++) {
+            signature[i] = Math.min(signature[i], (int) ((multipliers[i] * filmId + increments[i]) % PRIME));
+        }
+    }
+
+    private void index(int userId, int[] signature) {
+        signatures.put(userId, signature);
+        for (int band = 0; band < BANDS; band++) {
+            bands[band].computeIfAbsent(bandKey(signature, band), key -> new HashSet<>()).add(userId);
+        }
+    }
+
+    private static long bandKey(int[] signature, int band) {
+        long key = 17;
+        for (int i = band * ROWS_PER_BAND; i < (band + 1) * ROWS_PER_BAND; i++) {
+            key = key * 31 + signature[i];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,208 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/*
+Движок рекомендаций в памяти для GET /users/{id}/recommendations.
+Для каждого пользователя хранится IntBitmap с id фильмов, которым он поставил лайк.
+Соседи пользователя — NEIGHBOURS_COUNT пользователей с наибольшим числом общих лайков;
+все множества просматриваются параллельно. Фильмы соседей, которые пользователь еще не лайкал,
+ранжируются по сумме числа общих лайков соседей, которым они понравились.
+Если соседей нет, рекомендации строятся по похожим фильмам из FilmSimilarityModel.
+При filmorate.recommendations.neighbours=minhash вместо просмотра всех пользователей
+общие лайки считаются только с кандидатами из MinHashIndex — результат приближенный,
+но время поиска соседей не растет с числом пользователей.
+При filmorate.recommendations.strategy=als рекомендации берутся из обучаемой в фоне AlsModel,
+а для пользователей, которых еще нет в модели, строятся по соседям.
+Движок обновляется инкрементально из FilmDbStorage и UserDbStorage и перестраивается из БД при старте.
+Перестроение и инкрементальные изменения выполняются под одной блокировкой, поэтому лайк,
+пришедший во время чтения из БД, применяется после перестроения и не затирается им.
+ */
+@Component
+@Slf4j
+public class RecommendationEngine {
+    static final int NEIGHBOURS_COUNT = 10;
+    static final int ALS_RECOMMENDATIONS_COUNT = 20;
+    private static final Comparator<Neighbour> NEIGHBOUR_ORDER = Comparator.comparingInt(Neighbour::overlap).reversed()
+            .thenComparingInt(Neighbour::userId);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmSimilarityModel similarityModel;
+    private final Map<Integer, IntBitmap> usersLikes = new ConcurrentHashMap<>();
+    private final MinHashIndex minHashIndex;
+    private final AlsModel alsModel;
+
+    public RecommendationEngine(JdbcTemplate jdbcTemplate,
+                                FilmSimilarityModel similarityModel,
+                                AlsModel alsModel,
+                                @Value("${filmorate.recommendations.neighbours:exact}") String neighboursMode,
+                                @Value("${filmorate.recommendations.strategy:neighbours}") String strategy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.similarityModel = similarityModel;
+        this.alsModel = switch (strategy.toLowerCase(Locale.ROOT)) {
+            case "neighbours" -> null;
+            case "als" -> alsModel;
+            default -> throw new IllegalArgumentException("Unknown recommendations strategy: " + strategy);
+        };
+        this.minHashIndex = switch (neighboursMode.toLowerCase(Locale.ROOT)) {
+            case "exact" -> null;
+            case "minhash" -> new MinHashIndex();
+            default -> throw new IllegalArgumentException("Unknown neighbours mode: " + neighboursMode);
+        };
+    }
+
+    public void rebuild() {
+        reload();
+        retrainAls();
+    }
+
+    private synchronized void reload() {
+        Map<Integer, List<Integer>> likes = new HashMap<>();
+        jdbcTemplate.query("SELECT user_id, film_id FROM users_films_likes", rs -> {
+            likes.computeIfAbsent(rs.getInt("user_id"), id -> new ArrayList<>()).add(rs.getInt("film_id"));
+        });
+        Map<Integer, IntBitmap> bitmaps = new HashMap<>();
+        likes.forEach((userId, filmIds) ->
+                bitmaps.put(userId, IntBitmap.of(filmIds.stream().mapToInt(Integer::intValue).toArray())));
+        usersLikes.keySet().retainAll(bitmaps.keySet());
+        usersLikes.putAll(bitmaps);
+        if (minHashIndex != null) {
+            minHashIndex.clear();
+            bitmaps.forEach(minHashIndex::put);
+        }
+        log.info("Recommendation engine rebuilt: {} users", usersLikes.size());
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.als.retrain-interval-ms:1800000}",
+            fixedDelayString = "${filmorate.recommendations.als.retrain-interval-ms:1800000}")
+    public void retrainAls() {
+        if (alsModel != null) {
+            alsModel.retrain();
+        }
+    }
+
+    public synchronized void addLike(int userId, int filmId) {
+        IntBitmap likes = usersLikes.merge(userId, IntBitmap.EMPTY.with(filmId),
+                (current, added) -> current.with(filmId));
+        if (minHashIndex != null) {
+            minHashIndex.add(userId, filmId);
+        }
+        similarityModel.addLike(userId, filmId, likes);
+    }
+
+    public synchronized void removeLike(int userId, int filmId) {
+        IntBitmap likes = usersLikes.computeIfPresent(userId, (id, current) -> {
+            IntBitmap updated = current.without(filmId);
+            return updated.isEmpty() ? null : updated;
+        });
+        if (minHashIndex != null) {
+            minHashIndex.put(userId, likes != null ? likes : IntBitmap.EMPTY);
+        }
+        similarityModel.removeLike(userId, filmId, likes != null ? likes : IntBitmap.EMPTY);
+    }
+
+    public synchronized void removeUser(int userId) {
+        IntBitmap likes = usersLikes.remove(userId);
+        if (minHashIndex != null) {
+            minHashIndex.remove(userId);
+        }
+        if (likes != null) {
+            similarityModel.removeUser(userId, likes);
+        }
+    }
+
+    public synchronized void removeFilm(int filmId) {
+        usersLikes.forEach((userId, userLikes) -> {
+            if (!userLikes.contains(filmId)) {
+                return;
+            }
+            IntBitmap likes = usersLikes.computeIfPresent(userId, (id, current) -> {
+                IntBitmap updated = current.without(filmId);
+                return updated.isEmpty() ? null : updated;
+            });
+            if (minHashIndex != null) {
+                minHashIndex.put(userId, likes != null ? likes : IntBitmap.EMPTY);
+            }
+        });
+        similarityModel.removeFilm(filmId);
+    }
+
+    public boolean hasLike(int userId, int filmId) {
+        IntBitmap likes = usersLikes.get(userId);
+        return likes != null && likes.contains(filmId);
+    }
+
+    /*
+    Возвращает до count соседей пользователя, упорядоченных по убыванию числа общих лайков.
+    Пользователи без общих лайков соседями не считаются.
+     */
+    public List<Neighbour> neighbours(int userId, int count) {
+        IntBitmap likes = usersLikes.get(userId);
+        if (likes == null) {
+            return List.of();
+        }
+        return candidates(userId)
+                .filter(entry -> entry.getKey() != userId)
+                .map(entry -> new Neighbour(entry.getKey(), likes.andCardinality(entry.getValue())))
+                .filter(neighbour -> neighbour.overlap() > 0)
+                .sorted(NEIGHBOUR_ORDER)
+                .limit(count)
+                .toList();
+    }
+
+    /*
+    Возвращает id рекомендованных фильмов по убыванию веса, при равенстве — по id.
+    Вес фильма — сумма числа общих лайков с соседями, которым он понравился,
+    для стратегии als — оценка модели (не более ALS_RECOMMENDATIONS_COUNT фильмов).
+     */
+    public List<Integer> recommend(int userId) {
+        IntBitmap likes = usersLikes.getOrDefault(userId, IntBitmap.EMPTY);
+        if (alsModel != null) {
+            List<Integer> filmIds = alsModel.recommend(userId, likes, ALS_RECOMMENDATIONS_COUNT);
+            if (!filmIds.isEmpty()) {
+                return filmIds;
+            }
+        }
+        List<Neighbour> neighbours = neighbours(userId, NEIGHBOURS_COUNT);
+        if (neighbours.isEmpty()) {
+            return similarityModel.recommend(likes);
+        }
+        Map<Integer, Integer> scores = new HashMap<>();
+        for (Neighbour neighbour : neighbours) {
+            usersLikes.getOrDefault(neighbour.userId(), IntBitmap.EMPTY).forEach(filmId -> {
+                if (!likes.contains(filmId)) {
+                    scores.merge(filmId, neighbour.overlap(), Integer::sum);
+                }
+            });
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey()))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private Stream<Map.Entry<Integer, IntBitmap>> candidates(int userId) {
+        if (minHashIndex == null) {
+            return usersLikes.entrySet().parallelStream();
+        }
+        return minHashIndex.candidates(userId).stream()
+                .map(candidateId -> Map.entry(candidateId, usersLikes.getOrDefault(candidateId, IntBitmap.EMPTY)));
+    }
+
+    public record Neighbour(int userId, int overlap) {
+    }
+}
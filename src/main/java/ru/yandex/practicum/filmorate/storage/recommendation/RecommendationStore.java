@@ -0,0 +1,104 @@
+package ru.yandex.practicum.filmorate.storage.recommendation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Предрассчитанные рекомендации для GET /users/{id}/recommendations.
+Рекомендации пользователя считаются RecommendationEngine при первом запросе и дальше отдаются из памяти
+вместе с временем расчета. Лайк или удаление лайка помечает пользователя измененным; фоновая задача
+пересчитывает измененных пользователей и их соседей, а также записи старше max-age
+(так в них попадают результаты перестроения и переобучения моделей).
+За один запуск берется не больше refresh-batch-size измененных пользователей (каждый требует поиска
+соседей) и столько же устаревших записей, остальные ждут следующего запуска: задача не занимает
+поток планировщика надолго даже при большом потоке лайков.
+Из сохраненного списка при чтении убираются фильмы, которые пользователь уже лайкнул.
+ */
+@Component
+@Slf4j
+public class RecommendationStore {
+    private final RecommendationEngine recommendationEngine;
+    private final long maxAgeMillis;
+    private final int batchSize;
+    private final Map<Integer, Entry> recommendations = new ConcurrentHashMap<>();
+    private final Set<Integer> changedUsers = ConcurrentHashMap.newKeySet();
+
+    public RecommendationStore(RecommendationEngine recommendationEngine,
+                               @Value("${filmorate.recommendations.max-age-ms:600000}") long maxAgeMillis,
+                               @Value("${filmorate.recommendations.refresh-batch-size:100}") int batchSize) {
+        this.recommendationEngine = recommendationEngine;
+        this.maxAgeMillis = maxAgeMillis;
+        this.batchSize = batchSize;
+    }
+
+    // Возвращает рекомендации пользователя и время их расчета
+    public Entry get(int userId) {
+        Entry entry = recommendations.get(userId);
+        if (entry == null) {
+            entry = compute(userId);
+            recommendations.put(userId, entry);
+            return entry;
+        }
+        List<Integer> filmIds = entry.filmIds().stream()
+                .filter(filmId -> !recommendationEngine.hasLike(userId, filmId))
+                .toList();
+        return filmIds.size() == entry.filmIds().size() ? entry : new Entry(filmIds, entry.computedAt());
+    }
+
+    public void markChanged(int userId) {
+        changedUsers.add(userId);
+    }
+
+    public void remove(int userId) {
+        changedUsers.remove(userId);
+        recommendations.remove(userId);
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.refresh-interval-ms:5000}",
+            fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:5000}")
+    public void refresh() {
+        Set<Integer> users = new HashSet<>();
+        Iterator<Integer> iterator = changedUsers.iterator();
+        for (int taken = 0; taken < batchSize && iterator.hasNext(); taken++) {
+            int userId = iterator.next();
+            iterator.remove();
+            users.add(userId);
+            recommendationEngine.neighbours(userId, RecommendationEngine.NEIGHBOURS_COUNT)
+                    .forEach(neighbour -> users.add(neighbour.userId()));
+        }
+        Instant staleBefore = Instant.now().minusMillis(maxAgeMillis);
+        recommendations.entrySet().stream()
+                .filter(entry -> entry.getValue().computedAt().isBefore(staleBefore))
+                .limit(batchSize)
+                .forEach(entry -> users.add(entry.getKey()));
+        int refreshed = 0;
+        for (int userId : users) {
+            if (recommendations.containsKey(userId)) {
+                Entry entry = compute(userId);
+                if (recommendations.computeIfPresent(userId, (id, previous) -> entry) != null) {
+                    refreshed++;
+                }
+            }
+        }
+        if (refreshed > 0) {
+            log.debug("Recommendations refreshed for {} users", refreshed);
+        }
+    }
+
+    private Entry compute(int userId) {
+        return new Entry(recommendationEngine.recommend(userId), Instant.now());
+    }
+
+    public record Entry(List<Integer> filmIds, Instant computedAt) {
+    }
+}
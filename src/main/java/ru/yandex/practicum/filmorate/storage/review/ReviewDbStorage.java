@@ -10,7 +10,7 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.Review;
-import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 import ru.yandex.practicum.filmorate.storage.reviews_ratings.ReviewsRatingsStorage;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
@@ -30,7 +30,7 @@ public class ReviewDbStorage implements ReviewStorage {
     private final UserStorage userStorage;
     private final ReviewsRatingsStorage reviewsRatingsStorage;
     private final SimpleJdbcInsert reviewsJdbcInsert;
-    private final FeedDbStorage feedDbStorage;
+    private final FeedStorage feedStorage;
     private static final String SELECT_REVIEWS_QUERY = """
                SELECT r.id,
                       r.content,
@@ -74,7 +74,7 @@ public class ReviewDbStorage implements ReviewStorage {
         argsMap.put("user_id", review.getUserId());
         argsMap.put("film_id", review.getFilmId());
         int reviewId = reviewsJdbcInsert.executeAndReturnKey(argsMap).intValue();
-        feedDbStorage.addEvent(new FeedEvent(review.getUserId(), FeedEvent.EventType.REVIEW, FeedEvent.Operation.ADD, reviewId));
+        feedStorage.addEvent(new FeedEvent(review.getUserId(), FeedEvent.EventType.REVIEW, FeedEvent.Operation.ADD, reviewId));
 
         return getById(reviewId);
     }
@@ -88,7 +88,7 @@ public class ReviewDbStorage implements ReviewStorage {
                 review.getReviewId()
         );
         userStorage.checkUserExists(originalUserId);
-        feedDbStorage.addEvent(new FeedEvent(originalUserId, FeedEvent.EventType.REVIEW, FeedEvent.Operation.UPDATE, review.getReviewId()));
+        feedStorage.addEvent(new FeedEvent(originalUserId, FeedEvent.EventType.REVIEW, FeedEvent.Operation.UPDATE, review.getReviewId()));
 
         jdbcTemplate.update("""
                 UPDATE reviews
@@ -112,7 +112,7 @@ public class ReviewDbStorage implements ReviewStorage {
                 reviewId
         );
 
-        feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.REVIEW, FeedEvent.Operation.REMOVE, reviewId));
+        feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.REVIEW, FeedEvent.Operation.REMOVE, reviewId));
 
         jdbcTemplate.update("DELETE from reviews WHERE id = ?", reviewId);
     }
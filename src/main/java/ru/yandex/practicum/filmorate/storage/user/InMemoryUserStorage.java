@@ -3,10 +3,11 @@ package ru.yandex.practicum.filmorate.storage.user;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestStatus;
 
+import java.time.Instant;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -122,7 +123,24 @@ public abstract class InMemoryUserStorage implements UserStorage {
     }
 
     @Override
-    public Collection<Film> getRecommendations(int userId) {
-        return List.of();
+    public void checkUsersExist(Collection<Integer> ids) {
+        List<Integer> missingIds = ids.stream()
+                .filter(id -> !users.containsKey(id))
+                .distinct()
+                .sorted()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            String reason = missingIds.size() == 1
+                    ? String.format("user with id %d not found", missingIds.getFirst())
+                    : String.format("users with ids %s not found", missingIds);
+            log.warn("Validation failed: {}", reason);
+            throw new NotFoundException(reason);
+        }
+    }
+
+    @Override
+    public Recommendations getRecommendations(int userId) {
+        checkUserExists(userId);
+        return new Recommendations(List.of(), Instant.now());
     }
 }
@@ -12,20 +12,27 @@ import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.FeedEvent;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.AfterCommit;
+import ru.yandex.practicum.filmorate.storage.feed.FeedStorage;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.film.FilmMapper;
-import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestStatus;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestChange;
 import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestStorage;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStore;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
-import static ru.yandex.practicum.filmorate.storage.film.FilmDbStorage.SELECT_FILMS_QUERY;
+import java.util.Set;
 
 @Repository
 @Primary
@@ -33,10 +40,15 @@ import static ru.yandex.practicum.filmorate.storage.film.FilmDbStorage.SELECT_FI
 @Slf4j
 public class UserDbStorage implements UserStorage {
     private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
     private final FriendRequestStorage friendRequestStorage;
     private final SimpleJdbcInsert usersJdbcInsert;
-    private final FeedDbStorage feedDbStorage;
-    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FeedStorage feedStorage;
+    private final FilmLoader filmLoader;
+    private final FilmPopularityIndex popularityIndex;
+    private final LikesIndex likesIndex;
+    private final RecommendationEngine recommendationEngine;
+    private final RecommendationStore recommendationStore;
 
     private static final String SELECT_USERS_QUERY = """
             SELECT id,
@@ -89,111 +101,91 @@ public class UserDbStorage implements UserStorage {
     @Transactional
     public void delete(int userId) {
         checkUserExists(userId);
+        List<Integer> likedFilmsIds = jdbcTemplate.queryForList(
+                "SELECT film_id FROM users_films_likes WHERE user_id = ?", Integer.class, userId);
+        jdbcTemplate.update("""
+                UPDATE films
+                   SET likes_count = likes_count - 1
+                 WHERE id IN (SELECT film_id
+                                FROM users_films_likes
+                               WHERE user_id = ?)
+                """, userId);
         jdbcTemplate.update("DELETE FROM users_films_likes WHERE user_id = ?", userId);
-        jdbcTemplate.update("DELETE FROM users_friends_requests WHERE user_id = ?", userId);
-        jdbcTemplate.update("DELETE FROM users_friends_requests WHERE friend_id = ?", userId);
-        jdbcTemplate.update("DELETE FROM user_feeds WHERE user_id = ?", userId);
+        AfterCommit.run(() -> {
+            likedFilmsIds.forEach(filmId -> popularityIndex.changeLikes(filmId, -1));
+            likesIndex.removeUser(userId);
+            recommendationEngine.removeUser(userId);
+            recommendationStore.remove(userId);
+        });
+        friendRequestStorage.deleteByUserId(userId);
+        feedStorage.deleteUserFeed(userId);
         jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
     }
 
+    /*
+    Переход состояния пары выполняется одним запросом в FriendRequestStorage,
+    событие ленты добавляется в той же транзакции.
+     */
     @Override
+    @Transactional
     public void addFriend(int userId, int friendId) {
         checkUserExists(userId);
         checkUserExists(friendId);
 
-        if (friendRequestStorage.get(userId, friendId).isPresent()) {
-            return;
+        FriendRequestChange change = friendRequestStorage.addRequest(userId, friendId);
+        if (change != FriendRequestChange.NONE) {
+            feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.ADD, friendId));
         }
-        friendRequestStorage.get(friendId, userId).ifPresentOrElse(
-                s -> {
-                    if (s == FriendRequestStatus.UNAPPROVED) {
-                        friendRequestStorage.update(friendId, userId, FriendRequestStatus.APPROVED);
-                        feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.ADD, friendId));
-                    }
-                },
-                () -> {
-                    friendRequestStorage.create(userId, friendId, FriendRequestStatus.UNAPPROVED);
-                    feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.ADD, friendId));
-                }
-        );
     }
 
     @Override
+    @Transactional
     public void deleteFriend(int userId, int friendId) {
         checkUserExists(userId);
         checkUserExists(friendId);
 
-        friendRequestStorage.get(userId, friendId).ifPresentOrElse(
-                s -> {
-                    switch (s) {
-                        case UNAPPROVED -> {
-                            friendRequestStorage.delete(userId, friendId);
-                            feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.REMOVE, friendId));
-                        }
-                        case APPROVED -> {
-                            friendRequestStorage.delete(userId, friendId);
-                            friendRequestStorage.create(friendId, userId, FriendRequestStatus.UNAPPROVED);
-                            feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.REMOVE, friendId));
-                        }
-                    }
-                },
-                () -> friendRequestStorage.get(friendId, userId).ifPresent(
-                        s -> {
-                            if (s == FriendRequestStatus.APPROVED) {
-                                friendRequestStorage.update(friendId, userId, FriendRequestStatus.UNAPPROVED);
-                                feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.UPDATE, friendId));
-                            }
-                        }
-                )
-        );
+        FeedEvent.Operation operation = switch (friendRequestStorage.removeRequest(userId, friendId)) {
+            case DELETED, REVERSED -> FeedEvent.Operation.REMOVE;
+            case UNAPPROVED -> FeedEvent.Operation.UPDATE;
+            default -> null;
+        };
+        if (operation != null) {
+            feedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.FRIEND, operation, friendId));
+        }
     }
 
     @Override
     public Collection<User> getFriends(int userId) {
         checkUserExists(userId);
-        String query = String.format(SELECT_USERS_QUERY, """
-                WHERE id IN (
-                     SELECT friend_id
-                       FROM users_friends_requests
-                      WHERE user_id = ?
-                      UNION
-                     SELECT user_id
-                       FROM users_friends_requests
-                      WHERE friend_id = ?
-                        AND status = ?
-                     )
-                """);
-        String status = FriendRequestStatus.APPROVED.name().toLowerCase();
-        return jdbcTemplate.query(query, UserMapper.getInstance(), userId, userId, status);
+        return getByIds(friendRequestStorage.getFriendsIds(userId));
     }
 
     @Override
     public Collection<User> getCommonFriends(int userId, int otherId) {
         checkUserExists(userId);
         checkUserExists(otherId);
-        String query = String.format(SELECT_USERS_QUERY, """
-                WHERE id IN (
-                     (SELECT friend_id
-                       FROM users_friends_requests
-                      WHERE user_id = ?
-                      UNION
-                     SELECT user_id
-                       FROM users_friends_requests
-                      WHERE friend_id = ?
-                        AND status = ?)
-                  INTERSECT
-                     (SELECT friend_id
-                       FROM users_friends_requests
-                      WHERE user_id = ?
-                      UNION
-                     SELECT user_id
-                       FROM users_friends_requests
-                      WHERE friend_id = ?
-                        AND status = ?)
-                     )
-                """);
-        String status = FriendRequestStatus.APPROVED.name().toLowerCase();
-        return jdbcTemplate.query(query, UserMapper.getInstance(), userId, userId, status, otherId, otherId, status);
+        return getByIds(friendRequestStorage.getCommonFriendsIds(userId, otherId));
+    }
+
+    /*
+    GET /users/{id}/friends/suggestions?count={count}
+    Друзья друзей по убыванию числа общих друзей, по FriendGraph.
+     */
+    @Override
+    public Collection<User> getFriendSuggestions(int userId, int count) {
+        checkUserExists(userId);
+        return getByIdsInOrder(friendRequestStorage.getFriendSuggestionsIds(userId, count));
+    }
+
+    /*
+    GET /users/{id}/distance/{otherId}
+    Пользователи на кратчайшем пути по одобренным заявкам в друзья, от userId до otherId.
+     */
+    @Override
+    public Collection<User> getFriendshipPath(int userId, int otherId) {
+        checkUserExists(userId);
+        checkUserExists(otherId);
+        return getByIdsInOrder(friendRequestStorage.getFriendshipPathIds(userId, otherId));
     }
 
     @Override
@@ -207,42 +199,60 @@ public class UserDbStorage implements UserStorage {
         }
     }
 
-    public Collection<Film> getRecommendations(int userId) {
-        String queryUserEachLike = """
-                    SELECT u2.user_id
-                    FROM users_films_likes u1
-                    JOIN users_films_likes u2 ON u1.film_id = u2.film_id
-                    WHERE u1.user_id = ? AND u2.user_id != ?
-                    GROUP BY u2.user_id
-                    ORDER BY COUNT(u1.film_id) DESC
-                    LIMIT 1
-                """;
-        List<Integer> userIdEachLikesFilms = jdbcTemplate.queryForList(queryUserEachLike, Integer.class, userId, userId);
-
-        if (userIdEachLikesFilms.isEmpty()) {
-            return new ArrayList<>();
+    @Override
+    public void checkUsersExist(Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return;
         }
+        Set<Integer> foundIds = new HashSet<>(namedParameterJdbcTemplate.queryForList(
+                "SELECT id FROM users WHERE id IN (:ids)", new MapSqlParameterSource("ids", ids), Integer.class));
+        List<Integer> missingIds = ids.stream()
+                .filter(id -> !foundIds.contains(id))
+                .distinct()
+                .sorted()
+                .toList();
+        if (!missingIds.isEmpty()) {
+            String reason = missingIds.size() == 1
+                    ? String.format("user with id %d not found", missingIds.getFirst())
+                    : String.format("users with ids %s not found", missingIds);
+            log.warn("Validation failed: {}", reason);
+            throw new NotFoundException(reason);
+        }
+    }
 
-        String queryForUserLikeFilm = """
-                    SELECT DISTINCT ufl1.film_id
-                    FROM users_films_likes ufl1
-                    WHERE ufl1.user_id = ?
-                    AND NOT EXISTS (
-                        SELECT 1
-                        FROM users_films_likes ufl2
-                        WHERE ufl2.user_id = ? AND ufl2.film_id = ufl1.film_id
-                    )
-                """;
+    public Recommendations getRecommendations(int userId) {
+        checkUserExists(userId);
+        RecommendationStore.Entry entry = recommendationStore.get(userId);
+        List<Integer> filmIds = entry.filmIds();
+        if (filmIds.isEmpty()) {
+            return new Recommendations(new ArrayList<>(), entry.computedAt());
+        }
 
-        List<Integer> filmIdUserNotLike = jdbcTemplate.queryForList(queryForUserLikeFilm, Integer.class, userIdEachLikesFilms.get(0), userId);
+        MapSqlParameterSource params = new MapSqlParameterSource("filmIds", filmIds);
+        Map<Integer, Film> filmsById = new HashMap<>();
+        filmLoader.load("WHERE f.id IN (:filmIds)", "", params).forEach(film -> filmsById.put(film.getId(), film));
+        List<Film> films = filmIds.stream()
+                .filter(filmsById::containsKey)
+                .map(filmsById::get)
+                .toList();
+        return new Recommendations(films, entry.computedAt());
+    }
 
-        if (filmIdUserNotLike.isEmpty()) {
+    private Collection<User> getByIds(int[] ids) {
+        if (ids.length == 0) {
             return new ArrayList<>();
         }
+        MapSqlParameterSource params = new MapSqlParameterSource("ids", Arrays.stream(ids).boxed().toList());
+        return namedParameterJdbcTemplate.query(String.format(SELECT_USERS_QUERY, "WHERE id IN (:ids) ORDER BY id"),
+                params, UserMapper.getInstance());
+    }
 
-        MapSqlParameterSource params = new MapSqlParameterSource("filmIds", filmIdUserNotLike);
-        String query = String.format(SELECT_FILMS_QUERY, "WHERE f.id IN (:filmIds)", "");
-
-        return namedParameterJdbcTemplate.query(query, params, FilmMapper.getInstance());
+    private List<User> getByIdsInOrder(int[] ids) {
+        Map<Integer, User> usersById = new HashMap<>();
+        getByIds(ids).forEach(user -> usersById.put(user.getId(), user));
+        return Arrays.stream(ids)
+                .filter(usersById::containsKey)
+                .mapToObj(usersById::get)
+                .toList();
     }
-}
\ No newline at end of file
+}
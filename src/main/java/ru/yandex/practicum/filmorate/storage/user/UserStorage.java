@@ -1,6 +1,6 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
-import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.Collection;
@@ -24,7 +24,13 @@ public interface UserStorage {
 
     Collection<User> getCommonFriends(int userId, int otherId);
 
+    Collection<User> getFriendSuggestions(int userId, int count);
+
+    Collection<User> getFriendshipPath(int userId, int otherId);
+
     void checkUserExists(int id);
 
-    Collection<Film> getRecommendations(int userId);
+    void checkUsersExist(Collection<Integer> ids);
+
+    Recommendations getRecommendations(int userId);
 }
@@ -5,9 +5,14 @@ CREATE TABLE IF NOT EXISTS films
     description  varchar(200) NOT NULL,
     release_date date         NOT NULL,
     duration     int          NOT NULL,
-    mpa_id       int          NOT NULL
+    mpa_id       int          NOT NULL,
+    likes_count  int          NOT NULL DEFAULT 0
 );
 
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count int NOT NULL DEFAULT 0;
+
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, id);
+
 
 CREATE TABLE IF NOT EXISTS mpa
 (
@@ -34,6 +39,8 @@ CREATE TABLE IF NOT EXISTS films_directors
     PRIMARY KEY (film_id, director_id)
 );
 
+CREATE INDEX IF NOT EXISTS films_directors_director_id_idx ON films_directors (director_id, film_id);
+
 CREATE TABLE IF NOT EXISTS films_genres
 (
     film_id  int NOT NULL REFERENCES films (id),
@@ -41,6 +48,8 @@ CREATE TABLE IF NOT EXISTS films_genres
     PRIMARY KEY (film_id, genre_id)
 );
 
+CREATE INDEX IF NOT EXISTS films_genres_genre_id_idx ON films_genres (genre_id, film_id);
+
 CREATE TABLE IF NOT EXISTS users
 (
     id       int GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -57,14 +66,34 @@ CREATE TABLE IF NOT EXISTS users_films_likes
     PRIMARY KEY (film_id, user_id)
 );
 
+CREATE INDEX IF NOT EXISTS users_films_likes_user_id_idx ON users_films_likes (user_id, film_id);
+
 CREATE TABLE IF NOT EXISTS users_friends_requests
 (
     user_id   int NOT NULL REFERENCES users (id),
     friend_id int NOT NULL REFERENCES users (id),
     status    varchar(20) NOT NULL,
+    pair_min  int GENERATED ALWAYS AS (LEAST(user_id, friend_id)),
+    pair_max  int GENERATED ALWAYS AS (GREATEST(user_id, friend_id)),
     PRIMARY KEY (user_id, friend_id)
 );
 
+ALTER TABLE users_friends_requests ADD COLUMN IF NOT EXISTS pair_min int GENERATED ALWAYS AS (LEAST(user_id, friend_id));
+ALTER TABLE users_friends_requests ADD COLUMN IF NOT EXISTS pair_max int GENERATED ALWAYS AS (GREATEST(user_id, friend_id));
+
+-- Встречные заявки, созданные одновременно до появления уникального индекса пары, сводятся к одной одобренной
+UPDATE users_friends_requests r
+   SET status = 'approved'
+ WHERE r.user_id < r.friend_id
+   AND EXISTS (SELECT 1 FROM users_friends_requests o WHERE o.user_id = r.friend_id AND o.friend_id = r.user_id);
+DELETE
+  FROM users_friends_requests r
+ WHERE r.user_id > r.friend_id
+   AND EXISTS (SELECT 1 FROM users_friends_requests o WHERE o.user_id = r.friend_id AND o.friend_id = r.user_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS users_friends_requests_pair_idx ON users_friends_requests (pair_min, pair_max);
+CREATE INDEX IF NOT EXISTS users_friends_requests_friend_id_idx ON users_friends_requests (friend_id, user_id);
+
 CREATE TABLE IF NOT EXISTS reviews
 (
     id          int GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -74,6 +103,9 @@ CREATE TABLE IF NOT EXISTS reviews
     film_id     int NOT NULL REFERENCES films (id)
 );
 
+CREATE INDEX IF NOT EXISTS reviews_film_id_idx ON reviews (film_id);
+CREATE INDEX IF NOT EXISTS reviews_user_id_idx ON reviews (user_id);
+
 CREATE TABLE IF NOT EXISTS users_reviews_ratings
 (
     user_id   int NOT NULL REFERENCES users (id),
@@ -82,6 +114,8 @@ CREATE TABLE IF NOT EXISTS users_reviews_ratings
     PRIMARY KEY (user_id, review_id)
 );
 
+CREATE INDEX IF NOT EXISTS users_reviews_ratings_review_id_idx ON users_reviews_ratings (review_id, score);
+
 CREATE TABLE IF NOT EXISTS user_feeds
 (
     event_id   int GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -92,3 +126,5 @@ CREATE TABLE IF NOT EXISTS user_feeds
     created_at timestamp      NOT NULL
 );
 
+CREATE INDEX IF NOT EXISTS user_feeds_user_id_event_id_idx ON user_feeds (user_id, event_id);
+
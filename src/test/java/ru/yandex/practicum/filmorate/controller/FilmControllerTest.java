@@ -9,6 +9,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
 import ru.yandex.practicum.filmorate.testdata.FilmBuilder;
 import ru.yandex.practicum.filmorate.testdata.FilmorateApi;
 import ru.yandex.practicum.filmorate.testdata.TestUtils;
@@ -16,6 +17,12 @@ import ru.yandex.practicum.filmorate.testdata.UserBuilder;
 import ru.yandex.practicum.filmorate.validation.ReleaseDateValidator;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 import static org.hamcrest.Matchers.hasItems;
@@ -31,6 +38,8 @@ import static ru.yandex.practicum.filmorate.testdata.Matchers.validationError;
 public class FilmControllerTest {
     @Autowired
     private FilmorateApi filmorateApi;
+    @Autowired
+    private FilmSimilarityModel similarityModel;
 
 
     @Test
@@ -254,6 +263,81 @@ public class FilmControllerTest {
                 .andExpect(jsonPath("$.likes").value(1));
     }
 
+    @Test
+    void concurrentRepeatedLikesAreCountedOnce() throws Exception {
+        int usersCount = 3;
+        int repeats = 20;
+        int filmId = filmorateApi.createAndGetId(new FilmBuilder().build());
+        List<Integer> usersIds = new ArrayList<>();
+        for (int i = 0; i < usersCount; i++) {
+            usersIds.add(filmorateApi.createAndGetId(new UserBuilder().build()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < repeats; i++) {
+                for (int userId : usersIds) {
+                    futures.add(executor.submit(() -> {
+                        filmorateApi.addLike(filmId, userId).andExpect(status().isOk());
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        filmorateApi.getFilmById(filmId)
+                .andExpect(jsonPath("$.likes").value(usersCount));
+    }
+
+    @Test
+    void filmsSimilar() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int filmId = filmorateApi.createAndGetId(new FilmBuilder().build());
+        int otherFilmId = filmorateApi.createAndGetId(new FilmBuilder().build());
+
+        filmorateApi.addLike(filmId, userId);
+        filmorateApi.addLike(otherFilmId, userId);
+        similarityModel.applyChanges();
+
+        filmorateApi.filmsSimilar(filmId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(otherFilmId));
+        filmorateApi.filmsSimilar(999).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void filmsCommonForGroup() throws Exception {
+        int user1 = filmorateApi.createAndGetId(new UserBuilder().build());
+        int user2 = filmorateApi.createAndGetId(new UserBuilder().build());
+        int user3 = filmorateApi.createAndGetId(new UserBuilder().build());
+        int filmForAll = filmorateApi.createAndGetId(new FilmBuilder().build());
+        int filmForTwo = filmorateApi.createAndGetId(new FilmBuilder().build());
+        int filmForOne = filmorateApi.createAndGetId(new FilmBuilder().build());
+        filmorateApi.addLike(filmForAll, user1);
+        filmorateApi.addLike(filmForAll, user2);
+        filmorateApi.addLike(filmForAll, user3);
+        filmorateApi.addLike(filmForTwo, user1);
+        filmorateApi.addLike(filmForTwo, user3);
+        filmorateApi.addLike(filmForOne, user2);
+        String userIds = String.format("%d,%d,%d", user1, user2, user3);
+
+        filmorateApi.filmsCommon(userIds, null).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(filmForAll));
+        filmorateApi.filmsCommon(userIds, 2).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(filmForAll))
+                .andExpect(jsonPath("$[1].id").value(filmForTwo));
+        filmorateApi.filmsCommon(userIds, 4).andExpect(status().isBadRequest());
+        filmorateApi.filmsCommon(userIds + ",999", null).andExpect(status().isNotFound());
+    }
+
     @Test
     void filmIdMustExistOnAddLike() throws Exception {
         int userId = filmorateApi.createAndGetId(new UserBuilder().build());
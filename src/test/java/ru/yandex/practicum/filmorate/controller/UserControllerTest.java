@@ -1,5 +1,7 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import com.jayway.jsonpath.JsonPath;
+import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -8,14 +10,25 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MvcResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.testdata.FilmBuilder;
 import ru.yandex.practicum.filmorate.testdata.FilmorateApi;
 import ru.yandex.practicum.filmorate.testdata.UserBuilder;
 
 import java.time.LocalDate;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static ru.yandex.practicum.filmorate.testdata.Matchers.validationError;
@@ -24,6 +37,7 @@ import static ru.yandex.practicum.filmorate.testdata.Matchers.validationError;
 @AutoConfigureMockMvc
 @AutoConfigureTestDatabase
 @Import(FilmorateApi.class)
+@Slf4j
 public class UserControllerTest {
     @Autowired
     private FilmorateApi filmorateApi;
@@ -358,4 +372,170 @@ public class UserControllerTest {
         filmorateApi.getFriends(userId).andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(0));
     }
+
+    @Test
+    void userFeedShowsOwnEventsImmediately() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int friendId = filmorateApi.createAndGetId(new UserBuilder().build());
+
+        filmorateApi.addFriend(userId, friendId);
+        filmorateApi.deleteFriend(userId, friendId);
+
+        filmorateApi.getUserFeed(userId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventType").value("FRIEND"))
+                .andExpect(jsonPath("$[0].operation").value("ADD"))
+                .andExpect(jsonPath("$[0].entityId").value(friendId))
+                .andExpect(jsonPath("$[1].operation").value("REMOVE"));
+    }
+
+    @Test
+    void userFeedPages() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        for (int i = 0; i < 5; i++) {
+            int friendId = filmorateApi.createAndGetId(new UserBuilder().build());
+            filmorateApi.addFriend(userId, friendId);
+        }
+
+        MvcResult firstPage = filmorateApi.getUserFeedPage(userId, null, 3).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andReturn();
+        int lastEventId = JsonPath.read(firstPage.getResponse().getContentAsString(), "$[2].eventId");
+
+        filmorateApi.getUserFeedPage(userId, lastEventId, 3).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].eventId", greaterThan(lastEventId)));
+    }
+
+    @Test
+    void userFeedSinceReturnsOnlyNewEvents() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int friendId = filmorateApi.createAndGetId(new UserBuilder().build());
+        filmorateApi.addFriend(userId, friendId);
+        MvcResult feed = filmorateApi.getUserFeed(userId).andReturn();
+        int lastSeenEventId = JsonPath.read(feed.getResponse().getContentAsString(), "$[0].eventId");
+
+        filmorateApi.getUserFeedSince(userId, lastSeenEventId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        filmorateApi.deleteFriend(userId, friendId);
+        filmorateApi.getUserFeedSince(userId, lastSeenEventId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].operation").value("REMOVE"));
+    }
+
+    @Test
+    void userFeedLimitMustBePositive() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+
+        filmorateApi.getUserFeedPage(userId, null, 0).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void concurrentMutualFriendRequestsBecomeOneFriendship() throws Exception {
+        int pairsCount = 50;
+        int repeats = 3;
+        List<int[]> pairs = new ArrayList<>();
+        for (int i = 0; i < pairsCount; i++) {
+            pairs.add(new int[]{filmorateApi.createAndGetId(new UserBuilder().build()),
+                    filmorateApi.createAndGetId(new UserBuilder().build())});
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < repeats; i++) {
+                for (int[] pair : pairs) {
+                    futures.add(executor.submit(() -> {
+                        filmorateApi.addFriend(pair[0], pair[1]).andExpect(status().isOk());
+                        return null;
+                    }));
+                    futures.add(executor.submit(() -> {
+                        filmorateApi.addFriend(pair[1], pair[0]).andExpect(status().isOk());
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("{} concurrent friend requests in {} ms, {} requests/s", pairsCount * repeats * 2, millis,
+                pairsCount * repeats * 2 * 1000L / millis);
+
+        for (int[] pair : pairs) {
+            filmorateApi.getFriends(pair[0]).andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].id").value(pair[1]));
+            filmorateApi.getFriends(pair[1]).andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(1)))
+                    .andExpect(jsonPath("$[0].id").value(pair[0]));
+        }
+    }
+
+    @Test
+    void friendSuggestionsRankedByMutualFriends() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int friend1 = filmorateApi.createAndGetId(new UserBuilder().build());
+        int friend2 = filmorateApi.createAndGetId(new UserBuilder().build());
+        int twoMutual = filmorateApi.createAndGetId(new UserBuilder().build());
+        int oneMutual = filmorateApi.createAndGetId(new UserBuilder().build());
+        int pending = filmorateApi.createAndGetId(new UserBuilder().build());
+        filmorateApi.addFriend(userId, friend1);
+        filmorateApi.addFriend(userId, friend2);
+        filmorateApi.addFriend(friend1, twoMutual);
+        filmorateApi.addFriend(friend2, twoMutual);
+        filmorateApi.addFriend(friend1, oneMutual);
+        filmorateApi.addFriend(friend1, pending);
+        filmorateApi.addFriend(pending, userId);
+
+        filmorateApi.getFriendSuggestions(userId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(twoMutual))
+                .andExpect(jsonPath("$[1].id").value(oneMutual));
+        filmorateApi.getFriendSuggestions(999).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void friendshipPathFollowsApprovedFriends() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int friendId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int otherId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int strangerId = filmorateApi.createAndGetId(new UserBuilder().build());
+        filmorateApi.addFriend(userId, friendId);
+        filmorateApi.addFriend(friendId, userId);
+        filmorateApi.addFriend(otherId, friendId);
+        filmorateApi.addFriend(friendId, otherId);
+        filmorateApi.addFriend(strangerId, otherId);
+
+        filmorateApi.getFriendshipPath(userId, otherId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(3)))
+                .andExpect(jsonPath("$[0].id").value(userId))
+                .andExpect(jsonPath("$[1].id").value(friendId))
+                .andExpect(jsonPath("$[2].id").value(otherId));
+        filmorateApi.getFriendshipPath(userId, strangerId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+        filmorateApi.getFriendshipPath(userId, 999).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void recommendationsReportAge() throws Exception {
+        int userId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int neighbourId = filmorateApi.createAndGetId(new UserBuilder().build());
+        int likedFilmId = filmorateApi.createAndGetId(new FilmBuilder().build());
+        int recommendedFilmId = filmorateApi.createAndGetId(new FilmBuilder().build());
+        filmorateApi.addLike(likedFilmId, userId);
+        filmorateApi.addLike(likedFilmId, neighbourId);
+        filmorateApi.addLike(recommendedFilmId, neighbourId);
+
+        filmorateApi.getRecommendations(userId).andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(recommendedFilmId))
+                .andExpect(header().string(UserController.RECOMMENDATIONS_AGE_HEADER,
+                        matchesPattern("\\d+")));
+        filmorateApi.getRecommendations(999).andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,214 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.FilmorateJdbcConfig;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.feed.BatchingFeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.CachedFeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedRetentionJob;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+Кэш ленты дописывается только после фиксации транзакции,
+поэтому тесты работают без транзакции, которую открывает @JdbcTest.
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = "filmorate.feed.archive.dir=${java.io.tmpdir}/filmorate-feed-archive-${random.uuid}")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({
+        FeedDbStorage.class,
+        BatchingFeedStorage.class,
+        CachedFeedStorage.class,
+        FeedArchive.class,
+        FeedRetentionJob.class,
+        FilmorateJdbcConfig.class,
+})
+@Slf4j
+public class FeedStorageTest {
+    private static final int EVENTS_PER_USER = 50;
+
+    private final FeedDbStorage feedDbStorage;
+    private final CachedFeedStorage feedStorage;
+    private final SimpleJdbcInsert usersJdbcInsert;
+    private final FeedRetentionJob feedRetentionJob;
+    private final BatchingFeedStorage batchingFeedStorage;
+    private final PlatformTransactionManager transactionManager;
+
+    @Test
+    void recentEventsAreServedFromMemory() {
+        int userId = createUser();
+        // Доли микросекунды, которые H2 округлил бы вверх и вниз
+        Instant now = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        addEvents(userId, 3, now.plusNanos(900));
+
+        Assertions.assertEquals(3, feedStorage.getUserFeed(userId).size());
+        long misses = feedStorage.getCounters().getMisses();
+        addEvents(userId, 2, now.plusNanos(1_100));
+
+        List<FeedEvent> feed = List.copyOf(feedStorage.getUserFeed(userId));
+        Assertions.assertEquals(misses, feedStorage.getCounters().getMisses());
+        Assertions.assertEquals(List.copyOf(feedDbStorage.getUserFeed(userId)), feed);
+    }
+
+    @Test
+    void olderPagesAreReadFromDb() {
+        int userId = createUser();
+        List<FeedEvent> events = addEvents(userId, EVENTS_PER_USER + 10);
+        feedStorage.getUserFeed(userId, events.getLast().getEventId(), null);
+        long misses = feedStorage.getCounters().getMisses();
+
+        int lastSeenEventId = events.get(events.size() - 5).getEventId();
+        Assertions.assertEquals(4, feedStorage.getUserFeed(userId, lastSeenEventId, null).size());
+        Assertions.assertEquals(misses, feedStorage.getCounters().getMisses());
+
+        Assertions.assertEquals(events.size(), feedStorage.getUserFeed(userId).size());
+        Assertions.assertEquals(misses + 1, feedStorage.getCounters().getMisses());
+    }
+
+    @Test
+    void deletedFeedIsEvicted() {
+        int userId = createUser();
+        addEvents(userId, 2);
+        feedStorage.getUserFeed(userId);
+
+        feedStorage.deleteUserFeed(userId);
+
+        Assertions.assertTrue(feedStorage.getUserFeed(userId).isEmpty());
+    }
+
+    @Test
+    void eventsOfRolledBackTransactionAreNotWritten() {
+        int userId = createUser();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+        transaction.executeWithoutResult(status -> {
+            batchingFeedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, 1));
+            Assertions.assertEquals(0, batchingFeedStorage.getQueueDepth());
+            status.setRollbackOnly();
+        });
+        transaction.executeWithoutResult(status ->
+                batchingFeedStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, 2)));
+
+        List<FeedEvent> feed = List.copyOf(batchingFeedStorage.getUserFeed(userId));
+        Assertions.assertEquals(1, feed.size());
+        Assertions.assertEquals(2, feed.getFirst().getEntityId());
+    }
+
+    @Test
+    void memoryPerActiveUser() {
+        int users = 100;
+        long bytesBefore = feedStorage.getCachedBytes();
+        int usersBefore = feedStorage.getCachedUsers();
+        List<Integer> usersIds = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            int userId = createUser();
+            addEvents(userId, EVENTS_PER_USER);
+            feedStorage.getUserFeed(userId);
+            usersIds.add(userId);
+        }
+
+        long start = System.nanoTime();
+        int reads = 0;
+        for (int i = 0; i < 10; i++) {
+            for (int userId : usersIds) {
+                feedStorage.getUserFeed(userId, 0, 20);
+                reads++;
+            }
+        }
+        long bytesPerUser = (feedStorage.getCachedBytes() - bytesBefore) / (feedStorage.getCachedUsers() - usersBefore);
+        log.info("Feed cache: {} bytes per active user, {} us per read",
+                bytesPerUser, (System.nanoTime() - start) / 1000 / reads);
+        Assertions.assertTrue(bytesPerUser < 2048);
+    }
+
+    @Test
+    void oldEventsAreMovedToArchive() {
+        int userId = createUser();
+        Instant oldTimestamp = Instant.now().minus(100, ChronoUnit.DAYS);
+        List<FeedEvent> oldEvents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            oldEvents.add(new FeedEvent(null, userId, FeedEvent.EventType.FRIEND, FeedEvent.Operation.ADD, i + 1,
+                    oldTimestamp));
+        }
+        feedStorage.addEvents(oldEvents);
+        List<FeedEvent> newEvents = addEvents(userId, 2);
+        feedStorage.getUserFeed(userId);
+
+        Assertions.assertTrue(feedRetentionJob.archiveCreatedBefore(Instant.now().minus(90, ChronoUnit.DAYS)) >= 3);
+
+        Assertions.assertEquals(newEvents.stream().map(FeedEvent::getEventId).toList(),
+                feedStorage.getUserFeed(userId).stream().map(FeedEvent::getEventId).toList());
+        List<FeedEvent> archived = List.copyOf(feedStorage.getArchivedUserFeed(userId, 0, null));
+        Assertions.assertEquals(oldEvents.stream().map(FeedEvent::getEventId).toList(),
+                archived.stream().map(FeedEvent::getEventId).toList());
+        Assertions.assertEquals(FeedEvent.EventType.FRIEND, archived.getFirst().getEventType());
+        Assertions.assertEquals(1, feedStorage.getArchivedUserFeed(userId, archived.getFirst().getEventId(), 1).size());
+    }
+
+    @Test
+    void archivedFeedIsDeletedWithUser() {
+        int deletedUserId = createUser();
+        int otherUserId = createUser();
+        Instant oldTimestamp = Instant.now().minus(100, ChronoUnit.DAYS);
+        List<FeedEvent> oldEvents = new ArrayList<>();
+        for (int userId : new int[]{deletedUserId, otherUserId, deletedUserId}) {
+            oldEvents.add(new FeedEvent(null, userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, 1,
+                    oldTimestamp));
+        }
+        feedStorage.addEvents(oldEvents);
+        feedRetentionJob.archiveCreatedBefore(Instant.now().minus(90, ChronoUnit.DAYS));
+        Assertions.assertEquals(2, feedStorage.getArchivedUserFeed(deletedUserId, 0, null).size());
+
+        feedStorage.deleteUserFeed(deletedUserId);
+
+        Assertions.assertTrue(feedStorage.getArchivedUserFeed(deletedUserId, 0, null).isEmpty());
+        Assertions.assertEquals(List.of(oldEvents.get(1).getEventId()),
+                feedStorage.getArchivedUserFeed(otherUserId, 0, null).stream().map(FeedEvent::getEventId).toList());
+    }
+
+    private int createUser() {
+        return usersJdbcInsert.executeAndReturnKey(Map.of(
+                "email", "user@mail.ru",
+                "login", "user",
+                "name", "user",
+                "birthday", LocalDate.of(2000, 1, 1)
+        )).intValue();
+    }
+
+    private List<FeedEvent> addEvents(int userId, int count) {
+        return addEvents(userId, count, Instant.now());
+    }
+
+    private List<FeedEvent> addEvents(int userId, int count, Instant timestamp) {
+        List<FeedEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            FeedEvent.Operation operation = i % 2 == 0 ? FeedEvent.Operation.ADD : FeedEvent.Operation.REMOVE;
+            events.add(new FeedEvent(null, userId, FeedEvent.EventType.LIKE, operation, i + 1, timestamp));
+        }
+        feedStorage.addEvents(events);
+        return events;
+    }
+}
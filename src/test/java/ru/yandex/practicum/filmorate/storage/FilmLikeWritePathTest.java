@@ -0,0 +1,193 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.FilmorateJdbcConfig;
+import ru.yandex.practicum.filmorate.model.FeedEvent;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.BatchingFeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.CachedFeedStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedArchive;
+import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestDbStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.recommendation.AlsModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStore;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.testdata.FilmBuilder;
+import ru.yandex.practicum.filmorate.testdata.StatementRecorder;
+import ru.yandex.practicum.filmorate.testdata.UserBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/*
+Путь записи лайка в том виде, в каком он работает в приложении: лента пишется через BatchingFeedStorage.
+В потоке запроса новый лайк выполняет INSERT и обновление likes_count в одной транзакции,
+событие ленты записывается после фиксации фоновым потоком в общем batch.
+Замер пропускной способности сравнивает этот путь с прежним: getById пользователя, проверки
+существования фильма и пользователя, синхронная запись события, проверка лайка, INSERT и UPDATE,
+каждый запрос в своей транзакции.
+Запуск замера: mvn test -Pbenchmarks -Dtest=FilmLikeWritePathTest
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({
+        FilmDbStorage.class,
+        GenreDbStorage.class,
+        MpaDbStorage.class,
+        UserDbStorage.class,
+        FriendRequestDbStorage.class,
+        FriendGraph.class,
+        FilmorateJdbcConfig.class,
+        DirectorDbStorage.class,
+        FeedDbStorage.class,
+        CachedFeedStorage.class,
+        BatchingFeedStorage.class,
+        FeedArchive.class,
+        FilmLoader.class,
+        FilmPopularityIndex.class,
+        FilmSearchIndex.class,
+        LikesIndex.class,
+        RecommendationEngine.class,
+        FilmSimilarityModel.class,
+        AlsModel.class,
+        RecommendationStore.class,
+        StatementRecorder.class,
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+public class FilmLikeWritePathTest {
+    private static final int USERS = 1_000;
+    private static final int LIKES = 20_000;
+    private static final int THREADS = 8;
+
+    private final FilmDbStorage filmStorage;
+    private final UserDbStorage userStorage;
+    private final FeedDbStorage feedDbStorage;
+    private final BatchingFeedStorage feedStorage;
+    private final FilmPopularityIndex popularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final StatementRecorder statementRecorder;
+
+    @Test
+    void newLikeRunsTwoStatementsOnRequestThread() {
+        int filmId = filmStorage.create(new FilmBuilder().build()).getId();
+        int userId = userStorage.create(new UserBuilder().build()).getId();
+
+        statementRecorder.reset();
+        filmStorage.addLike(filmId, userId);
+
+        List<String> statements = statementRecorder.getStatements(Thread.currentThread());
+        Assertions.assertEquals(2, statements.size(), statements::toString);
+        Assertions.assertTrue(statements.get(0).startsWith("INSERT INTO users_films_likes"));
+        Assertions.assertTrue(statements.get(1).startsWith("UPDATE films SET likes_count"));
+        Assertions.assertEquals(1, feedStorage.getUserFeed(userId).size());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void likeThroughputComparedToPreviousPath() throws Exception {
+        int firstUserId = seedUsers(USERS);
+        int filmsPerPath = LIKES / USERS;
+        int currentFilmId = seedFilms(filmsPerPath);
+        int previousFilmId = seedFilms(filmsPerPath);
+        popularityIndex.rebuild();
+
+        double current = throughput(i -> filmStorage.addLike(currentFilmId + i / USERS, firstUserId + i % USERS));
+        double previous = throughput(i -> addLikeAsBefore(previousFilmId + i / USERS, firstUserId + i % USERS));
+        feedStorage.flush();
+
+        log.info("Likes from {} threads: current {} likes/s, previous {} likes/s", THREADS,
+                Math.round(current), Math.round(previous));
+        Assertions.assertEquals(LIKES, jdbcTemplate.queryForObject(
+                "SELECT SUM(likes_count) FROM films WHERE id BETWEEN ? AND ?", Integer.class,
+                currentFilmId, currentFilmId + filmsPerPath - 1));
+        Assertions.assertTrue(current > previous,
+                () -> String.format("current %.0f likes/s, previous %.0f likes/s", current, previous));
+    }
+
+    // Лайки с номерами 0..LIKES-1 ставятся из THREADS потоков; возвращает число лайков в секунду
+    private double throughput(IntConsumer like) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < LIKES; i += THREADS) {
+                        like.accept(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return LIKES * 1e9 / (System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Прежний FilmService.addLike и FilmDbStorage.addLike без общей транзакции
+    private void addLikeAsBefore(int filmId, int userId) {
+        userStorage.getById(userId);
+        filmStorage.checkFilmExists(filmId);
+        userStorage.checkUserExists(userId);
+        feedDbStorage.addEvent(new FeedEvent(userId, FeedEvent.EventType.LIKE, FeedEvent.Operation.ADD, filmId));
+        Boolean exists = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM users_films_likes WHERE film_id = ? AND user_id = ?)",
+                Boolean.class, filmId, userId);
+        if (exists != null && exists) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO users_films_likes (film_id, user_id) VALUES (?, ?)", filmId, userId);
+        jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE id = ?", filmId);
+    }
+
+    // Добавляет count пользователей и возвращает id первого из них; id идут подряд
+    private int seedUsers(int count) {
+        int lastId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM users", Integer.class);
+        jdbcTemplate.update("""
+                INSERT INTO users (email, login, name, birthday)
+                SELECT 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01'
+                  FROM SYSTEM_RANGE(1, ?)
+                """, count);
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM users WHERE id > ?", Integer.class, lastId);
+    }
+
+    private int seedFilms(int count) {
+        int lastId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM films", Integer.class);
+        jdbcTemplate.update("""
+                INSERT INTO films (name, description, release_date, duration, mpa_id)
+                SELECT 'film' || x, 'description', DATE '1990-01-01', 90, 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, count);
+        return jdbcTemplate.queryForObject("SELECT MIN(id) FROM films WHERE id > ?", Integer.class, lastId);
+    }
+}
@@ -0,0 +1,167 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Mpa;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/*
+Замер аллокаций при чтении фильмов через FilmLoader в сравнении с прежней реализацией маппера
+и гидрации (компараторы на каждую строку, новый Genre и Director на каждую строку связи, поиск колонок по имени).
+JMH в сборке нет, поэтому вместо gc.alloc.rate.norm используется ThreadMXBean.getCurrentThreadAllocatedBytes:
+это то же число байт, выделенных потоком на операцию. Вместо итераций JMH замер повторяется ROUNDS раз
+и берется минимум, что отсекает выделения JIT-компиляции и фоновых потоков Spring в первых раундах.
+Запуск: mvn test -Pbenchmarks -Dtest=FilmLoaderAllocationTest
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(FilmLoader.class)
+@Tag("benchmark")
+@Slf4j
+public class FilmLoaderAllocationTest {
+    private static final int FILMS = 5_000;
+    private static final int DIRECTORS = 50;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int ITERATIONS = 20;
+    private static final int ROUNDS = 5;
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+    private final FilmLoader filmLoader;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT x, 'film' || x, 'description', DATEADD(DAY, x, DATE '1990-01-01'), 90, MOD(x, 5) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO directors (id, name)
+                SELECT x, 'director' || x
+                  FROM SYSTEM_RANGE(1, ?)
+                """, DIRECTORS);
+        jdbcTemplate.update("""
+                INSERT INTO films_genres (film_id, genre_id)
+                SELECT f.x, MOD(f.x + g.x, 6) + 1
+                  FROM SYSTEM_RANGE(1, ?) f, SYSTEM_RANGE(1, 3) g
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO films_directors (film_id, director_id)
+                SELECT f.x, MOD(f.x + d.x, ?) + 1
+                  FROM SYSTEM_RANGE(1, ?) f, SYSTEM_RANGE(1, 2) d
+                """, DIRECTORS, FILMS);
+    }
+
+    @Test
+    void loaderAllocatesLessPerFilmThanPreviousMapping() {
+        Assertions.assertEquals(FILMS, filmLoader.load("", "ORDER BY f.id").size());
+        Assertions.assertEquals(FILMS, loadAsBefore().size());
+
+        Measurement current = measure(() -> filmLoader.load("", "ORDER BY f.id"));
+        Measurement previous = measure(this::loadAsBefore);
+
+        log.info("Loading {} films: current {} bytes/film, {} us/film; previous {} bytes/film, {} us/film",
+                FILMS, current.bytesPerFilm(), current.nanosPerFilm() / 1000.0,
+                previous.bytesPerFilm(), previous.nanosPerFilm() / 1000.0);
+        Assertions.assertTrue(current.bytesPerFilm() < previous.bytesPerFilm(),
+                () -> String.format("current %d bytes/film, previous %d bytes/film",
+                        current.bytesPerFilm(), previous.bytesPerFilm()));
+    }
+
+    // Минимум по ROUNDS раундам из ITERATIONS загрузок каждый
+    private Measurement measure(Supplier<List<Film>> load) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            load.get();
+        }
+        long operations = (long) ITERATIONS * FILMS;
+        Measurement best = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            long bytes = THREADS.getCurrentThreadAllocatedBytes();
+            long start = System.nanoTime();
+            for (int i = 0; i < ITERATIONS; i++) {
+                load.get();
+            }
+            long nanos = System.nanoTime() - start;
+            bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+            Measurement measurement = new Measurement(bytes / operations, nanos / operations);
+            if (best == null || measurement.bytesPerFilm() < best.bytesPerFilm()) {
+                best = measurement;
+            }
+        }
+        return best;
+    }
+
+    // Маппер и гидрация в том виде, в каком они были до сокращения аллокаций
+    private List<Film> loadAsBefore() {
+        RowMapper<Film> mapper = (rs, rowNum) -> new Film(rs.getInt("id"),
+                rs.getString("name"),
+                rs.getString("description"),
+                rs.getDate("release_date").toLocalDate(),
+                rs.getInt("duration"),
+                rs.getInt("likes"),
+                new TreeSet<>(Comparator.comparing(Genre::getId)),
+                new Mpa(rs.getInt("mpa_id"), rs.getString("mpa_name")),
+                new TreeSet<>(Comparator.comparing(Director::getId)));
+        List<Film> films = jdbcTemplate.query(String.format(FilmLoader.SELECT_FILMS_QUERY, "", "ORDER BY f.id"),
+                mapper);
+        Map<Integer, Film> filmsById = new HashMap<>();
+        for (Film film : films) {
+            filmsById.put(film.getId(), film);
+        }
+        List<Integer> filmIds = new ArrayList<>(filmsById.keySet());
+        for (int from = 0; from < filmIds.size(); from += 500) {
+            MapSqlParameterSource params = new MapSqlParameterSource("filmIds",
+                    filmIds.subList(from, Math.min(from + 500, filmIds.size())));
+            namedParameterJdbcTemplate.query("""
+                    SELECT fg.film_id, g.id, g.name
+                      FROM films_genres fg
+                      JOIN genres g ON fg.genre_id = g.id
+                     WHERE fg.film_id IN (:filmIds)
+                    """, params, rs -> {
+                Film film = filmsById.get(rs.getInt("film_id"));
+                film.getGenres().add(new Genre(rs.getInt("id"), rs.getString("name")));
+            });
+            namedParameterJdbcTemplate.query("""
+                    SELECT fd.film_id, d.id, d.name
+                      FROM films_directors fd
+                      JOIN directors d ON fd.director_id = d.id
+                     WHERE fd.film_id IN (:filmIds)
+                    """, params, rs -> {
+                Film film = filmsById.get(rs.getInt("film_id"));
+                film.getDirectors().add(new Director(rs.getInt("id"), rs.getString("name")));
+            });
+        }
+        return films;
+    }
+
+    private record Measurement(long bytesPerFilm, long nanosPerFilm) {
+    }
+}
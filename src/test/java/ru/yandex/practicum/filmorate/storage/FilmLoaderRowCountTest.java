@@ -0,0 +1,161 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/*
+Число промежуточных строк и задержка чтения каталога с сильно лайкнутыми фильмами:
+прежний SELECT_FILMS_QUERY с JOIN на лайки, жанры и режиссеров и GROUP BY
+в сравнении с двухфазным чтением FilmLoader (строки films, затем IN-запросы на связи).
+Запуск: mvn test -Pbenchmarks -Dtest=FilmLoaderRowCountTest
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import(FilmLoader.class)
+@Tag("benchmark")
+@Slf4j
+public class FilmLoaderRowCountTest {
+    private static final int USERS = 5_000;
+    private static final int FILMS = 200;
+    private static final int HEAVILY_LIKED_FILMS = 10;
+    private static final int LIKES_PER_FILM = 50;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 10;
+    private static final String JOINS = """
+              FROM films f
+              JOIN mpa m ON f.mpa_id = m.id
+         LEFT JOIN users_films_likes ufl ON f.id = ufl.film_id
+         LEFT JOIN films_genres fg ON f.id = fg.film_id
+         LEFT JOIN genres g ON fg.genre_id = g.id
+         LEFT JOIN films_directors fd ON f.id = fd.film_id
+         LEFT JOIN directors d ON fd.director_id = d.id
+            """;
+    // SELECT_FILMS_QUERY до перехода на FilmLoader
+    private static final String FAN_OUT_QUERY = """
+            SELECT f.id,
+                   f.name,
+                   f.description,
+                   f.release_date,
+                   f.duration,
+                   f.mpa_id,
+                   m.name AS mpa_name,
+                   COUNT(ufl.film_id) AS likes,
+                   COALESCE(group_concat(fg.genre_id separator ','), '') AS genres_ids,
+                   COALESCE(group_concat(g.name separator ','), '') AS genres_names,
+                   COALESCE(group_concat(fd.director_id separator ','), '') AS directors_ids,
+                   COALESCE(group_concat(d.name separator ','), '') AS directors_names
+            """ + JOINS + """
+             WHERE f.id > ?
+             GROUP BY f.id
+             ORDER BY f.id
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmLoader filmLoader;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT x, 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01'
+                  FROM SYSTEM_RANGE(1, ?)
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT x, 'film' || x, 'description', DATEADD(DAY, x, DATE '1990-01-01'), 90, MOD(x, 5) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, FILMS);
+        jdbcTemplate.update("INSERT INTO directors (id, name) VALUES (1, 'director1'), (2, 'director2')");
+        jdbcTemplate.update("""
+                INSERT INTO films_genres (film_id, genre_id)
+                SELECT f.x, MOD(f.x + g.x, 6) + 1
+                  FROM SYSTEM_RANGE(1, ?) f, SYSTEM_RANGE(1, 3) g
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO films_directors (film_id, director_id)
+                SELECT f.x, d.x
+                  FROM SYSTEM_RANGE(1, ?) f, SYSTEM_RANGE(1, 2) d
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO users_films_likes (user_id, film_id)
+                SELECT u.x, f.x
+                  FROM SYSTEM_RANGE(1, ?) u, SYSTEM_RANGE(1, ?) f
+                 WHERE f.x <= ? OR u.x <= ?
+                """, USERS, FILMS, HEAVILY_LIKED_FILMS, LIKES_PER_FILM);
+        jdbcTemplate.update("""
+                UPDATE films f
+                   SET likes_count = (SELECT COUNT(*) FROM users_films_likes ufl WHERE ufl.film_id = f.id)
+                """);
+    }
+
+    @Test
+    void twoPhaseLoadReadsFewerRowsAndIsFaster() {
+        int fanOutRows = jdbcTemplate.queryForObject("SELECT COUNT(*) " + JOINS, Integer.class);
+        int twoPhaseRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films", Integer.class)
+                + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films_genres", Integer.class)
+                + jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films_directors", Integer.class);
+
+        List<Film> films = loadTwoPhase(0);
+        Map<Integer, Integer> fanOutLikes = loadFanOut(0);
+        Assertions.assertEquals(FILMS, films.size());
+        Assertions.assertEquals(USERS, films.getFirst().getLikes());
+        Assertions.assertEquals(USERS * 3 * 2, fanOutLikes.get(films.getFirst().getId()));
+
+        long twoPhaseNanos = measure(this::loadTwoPhase);
+        long fanOutNanos = measure(this::loadFanOut);
+
+        log.info("Loading {} films ({} heavily liked): fan-out join {} rows, {} ms; two-phase {} rows, {} ms",
+                FILMS, HEAVILY_LIKED_FILMS, fanOutRows, fanOutNanos / 1_000_000, twoPhaseRows,
+                twoPhaseNanos / 1_000_000);
+        Assertions.assertTrue(twoPhaseRows < fanOutRows);
+        Assertions.assertTrue(twoPhaseNanos < fanOutNanos,
+                () -> String.format("two-phase %d ns, fan-out %d ns", twoPhaseNanos, fanOutNanos));
+    }
+
+    /*
+    Среднее время одного вызова load в наносекундах. Каждый вызов получает свое значение параметра
+    (все фильмы проходят условие): H2 повторно отдает результат одинакового запроса без выполнения.
+     */
+    private long measure(IntFunction<?> load) {
+        for (int i = 1; i <= WARMUP_ITERATIONS; i++) {
+            load.apply(-i);
+        }
+        long start = System.nanoTime();
+        for (int i = 1; i <= ITERATIONS; i++) {
+            load.apply(-WARMUP_ITERATIONS - i);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private List<Film> loadTwoPhase(int afterId) {
+        return filmLoader.load("WHERE f.id > ?", "ORDER BY f.id", afterId);
+    }
+
+    // Прежний запрос; значения likes завышены произведением числа жанров и режиссеров
+    private Map<Integer, Integer> loadFanOut(int afterId) {
+        Map<Integer, Integer> likes = new HashMap<>();
+        jdbcTemplate.query(FAN_OUT_QUERY, rs -> {
+            rs.getString("genres_names");
+            rs.getString("directors_names");
+            likes.put(rs.getInt("id"), rs.getInt("likes"));
+        }, afterId);
+        return likes;
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import net.datafaker.Faker;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/*
+Задержка поиска FilmSearchIndex на каталоге из FILMS фильмов по сравнению с перебором всех названий
+и имен режиссеров, который выполнял прежний LIKE '%query%'. Запросы — случайные подстроки
+существующих названий и имен; найденные индексом фильмы сверяются с результатом перебора.
+Запуск: mvn test -Pbenchmarks -Dtest=FilmSearchIndexTest
+ */
+@Tag("benchmark")
+@Slf4j
+public class FilmSearchIndexTest {
+    private static final int FILMS = Integer.getInteger("film-search.films", 100_000);
+    private static final int DIRECTORS = FILMS / 10;
+    private static final int QUERIES = 1_000;
+    private static final int SCAN_QUERIES = 100;
+
+    @Test
+    void searchOnLargeCatalog() {
+        Faker faker = new Faker(new Random(1));
+        String[] directorNames = new String[DIRECTORS + 1];
+        String[] titles = new String[FILMS + 1];
+        int[] filmDirectors = new int[FILMS + 1];
+        FilmSearchIndex index = new FilmSearchIndex(null);
+        long start = System.nanoTime();
+        for (int directorId = 1; directorId <= DIRECTORS; directorId++) {
+            directorNames[directorId] = faker.name().fullName();
+            index.putDirector(directorId, directorNames[directorId]);
+        }
+        for (int filmId = 1; filmId <= FILMS; filmId++) {
+            titles[filmId] = filmId % 2 == 0 ? faker.movie().name() : faker.book().title();
+            filmDirectors[filmId] = 1 + faker.random().nextInt(DIRECTORS);
+            index.putFilm(filmId, titles[filmId], List.of(filmDirectors[filmId]));
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Random random = new Random(1);
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String source = random.nextBoolean()
+                    ? titles[1 + random.nextInt(FILMS)]
+                    : directorNames[1 + random.nextInt(DIRECTORS)];
+            int length = Math.min(source.length(), 3 + random.nextInt(6));
+            int from = random.nextInt(source.length() - length + 1);
+            queries[i] = source.substring(from, from + length);
+        }
+
+        long indexNanos = 0;
+        long found = 0;
+        for (String query : queries) {
+            start = System.nanoTime();
+            found += index.search(query, true, true).size();
+            indexNanos += System.nanoTime() - start;
+        }
+
+        long scanNanos = 0;
+        for (int i = 0; i < SCAN_QUERIES; i++) {
+            start = System.nanoTime();
+            Set<Integer> expected = scan(queries[i], titles, directorNames, filmDirectors);
+            scanNanos += System.nanoTime() - start;
+            Assertions.assertEquals(expected, index.search(queries[i], true, true).keySet(), queries[i]);
+        }
+
+        log.info("Film search over {} films and {} directors: build {} ms, index {} us, scan {} us per query, "
+                        + "{} films found on average", FILMS, DIRECTORS, buildMillis, indexNanos / QUERIES / 1000,
+                scanNanos / SCAN_QUERIES / 1000, found / QUERIES);
+    }
+
+    private static Set<Integer> scan(String query, String[] titles, String[] directorNames, int[] filmDirectors) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        Set<Integer> result = new HashSet<>();
+        for (int filmId = 1; filmId < titles.length; filmId++) {
+            if (titles[filmId].toLowerCase(Locale.ROOT).contains(normalized)
+                    || directorNames[filmDirectors[filmId]].toLowerCase(Locale.ROOT).contains(normalized)) {
+                result.add(filmId);
+            }
+        }
+        return result;
+    }
+}
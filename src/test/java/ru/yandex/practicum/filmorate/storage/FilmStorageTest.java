@@ -1,29 +1,49 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.FilmorateJdbcConfig;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedArchive;
 import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestDbStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.recommendation.AlsModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStore;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 import ru.yandex.practicum.filmorate.testdata.FilmBuilder;
+import ru.yandex.practicum.filmorate.testdata.StatementRecorder;
 import ru.yandex.practicum.filmorate.testdata.TestUtils;
 import ru.yandex.practicum.filmorate.testdata.UserBuilder;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
@@ -37,14 +57,47 @@ import java.util.Set;
         MpaDbStorage.class,
         UserDbStorage.class,
         FriendRequestDbStorage.class,
+        FriendGraph.class,
         FilmorateJdbcConfig.class,
         DirectorDbStorage.class,
         FeedDbStorage.class,
+        FeedArchive.class,
+        FilmLoader.class,
+        FilmPopularityIndex.class,
+        FilmSearchIndex.class,
+        LikesIndex.class,
+        RecommendationEngine.class,
+        FilmSimilarityModel.class,
+        AlsModel.class,
+        RecommendationStore.class,
+        StatementRecorder.class,
 })
 public class FilmStorageTest {
     private final FilmDbStorage filmStorage;
     private final UserDbStorage userStorage;
-
+    private final DirectorDbStorage directorStorage;
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex popularityIndex;
+    private final StatementRecorder statementRecorder;
+    private final PlatformTransactionManager transactionManager;
+    private final FilmSimilarityModel similarityModel;
+    private final FriendGraph friendGraph;
+
+
+    /*
+    Индексы в памяти обновляются только после фиксации, поэтому тесты индексов работают без транзакции
+    (NOT_SUPPORTED на методе) и фиксируют данные. После такого теста данные удаляются,
+    а индексы перестраиваются, чтобы они не влияли на остальные тесты общего контекста.
+     */
+    @AfterEach
+    void deleteCommittedData() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        TestUtils.deleteCommittedData(jdbcTemplate);
+        filmStorage.onApplicationReady();
+        friendGraph.rebuild();
+    }
 
     @Test
     public void getFilmById() {
@@ -86,6 +139,34 @@ public class FilmStorageTest {
         Assertions.assertEquals(filmInput.getMpa().getId(), film.getMpa().getId());
     }
 
+    @Test
+    public void getFilmsPage() {
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+        int afterId = filmsIds.getFirst() - 1;
+
+        List<Film> firstPage = filmStorage.getPage(afterId, 3).stream().toList();
+        List<Film> secondPage = filmStorage.getPage(firstPage.getLast().getId(), 3).stream().toList();
+
+        Assertions.assertEquals(filmsIds.subList(0, 3), firstPage.stream().map(Film::getId).toList());
+        Assertions.assertEquals(filmsIds.subList(3, 5), secondPage.stream().map(Film::getId).toList());
+        Assertions.assertFalse(firstPage.getFirst().getGenres().isEmpty());
+    }
+
+    @Test
+    public void streamAllFilms() {
+        Film filmInput = filmStorage.create(new FilmBuilder().build());
+        List<Film> films = new ArrayList<>();
+
+        filmStorage.streamAll(films::add);
+
+        Assertions.assertEquals(filmStorage.getAll().size(), films.size());
+        Film film = films.stream().filter(f -> f.getId().equals(filmInput.getId())).findFirst().get();
+        TestUtils.compareGenres(filmInput, film);
+    }
+
     @Test
     public void filmCreate() {
         Film filmInput = new FilmBuilder().build();
@@ -142,6 +223,43 @@ public class FilmStorageTest {
         Assertions.assertEquals(filmInput.getMpa().getId(), film.getMpa().getId());
     }
 
+    @Test
+    public void filmCreateStatementsDoNotDependOnGenresCount() {
+        statementRecorder.reset();
+        filmStorage.create(new FilmBuilder().genres(1).build());
+        int singleGenreStatements = statementRecorder.getStatements().size();
+
+        statementRecorder.reset();
+        filmStorage.create(new FilmBuilder().genres(1, 2, 3, 4, 5, 6).build());
+
+        Assertions.assertEquals(singleGenreStatements, statementRecorder.getStatements().size());
+    }
+
+    @Test
+    public void filmUpdateWritesOnlyChangedGenres() {
+        int filmId = filmStorage.create(new FilmBuilder().genres(1, 2, 3).build()).getId();
+
+        statementRecorder.reset();
+        filmStorage.update(new FilmBuilder().id(filmId).genres(1, 2, 3).build());
+        Assertions.assertTrue(statementRecorder.getStatements("DELETE FROM films_genres").isEmpty());
+        Assertions.assertTrue(statementRecorder.getStatements("INSERT INTO films_genres").isEmpty());
+
+        statementRecorder.reset();
+        Film film = filmStorage.update(new FilmBuilder().id(filmId).genres(1, 2, 4).build());
+        Assertions.assertEquals(1, statementRecorder.getStatements("DELETE FROM films_genres").size());
+        Assertions.assertEquals(1, statementRecorder.getStatements("INSERT INTO films_genres").size());
+        Assertions.assertEquals(List.of(1, 2, 4), film.getGenres().stream().map(Genre::getId).toList());
+    }
+
+    @Test
+    public void filmCreateReportsAllMissingGenres() {
+        Film film = new FilmBuilder().genres(1, 98, 99).build();
+
+        NotFoundException e = Assertions.assertThrows(NotFoundException.class, () -> filmStorage.create(film));
+
+        Assertions.assertEquals("genres with ids [98, 99] not found", e.getMessage());
+    }
+
     @Test
     public void filmDelete() {
         Film filmInput = filmStorage.create(new FilmBuilder().build());
@@ -175,6 +293,54 @@ public class FilmStorageTest {
     }
 
     @Test
+    public void deleteMissingLikeKeepsLikesCount() {
+        Film film = filmStorage.create(new FilmBuilder().build());
+        User user = userStorage.create(new UserBuilder().build());
+        User otherUser = userStorage.create(new UserBuilder().build());
+
+        filmStorage.addLike(film.getId(), user.getId());
+        filmStorage.addLike(film.getId(), user.getId());
+        filmStorage.deleteLike(film.getId(), otherUser.getId());
+
+        Assertions.assertEquals(1, filmStorage.getById(film.getId()).getLikes());
+    }
+
+    @Test
+    public void repairLikesCount() {
+        Film film = filmStorage.create(new FilmBuilder().build());
+        User user = userStorage.create(new UserBuilder().build());
+        filmStorage.addLike(film.getId(), user.getId());
+        jdbcTemplate.update("UPDATE films SET likes_count = 42 WHERE id = ?", film.getId());
+
+        int repaired = filmStorage.repairLikesCount();
+
+        Assertions.assertTrue(repaired >= 1);
+        Assertions.assertEquals(1, filmStorage.getById(film.getId()).getLikes());
+        Assertions.assertEquals(0, filmStorage.repairLikesCount());
+    }
+
+    @Test
+    public void likesAreNotMultipliedByGenresAndDirectors() {
+        Film filmInput = new FilmBuilder().genres(1, 2, 3).build();
+        filmInput.setDirectors(Set.of(
+                directorStorage.create(new Director(null, "Director 1")),
+                directorStorage.create(new Director(null, "Director 2"))
+        ));
+        Film film = filmStorage.create(filmInput);
+        int usersCount = 5;
+        for (int i = 0; i < usersCount; i++) {
+            filmStorage.addLike(film.getId(), userStorage.create(new UserBuilder().build()).getId());
+        }
+
+        Film result = filmStorage.getById(film.getId());
+
+        Assertions.assertEquals(usersCount, result.getLikes());
+        Assertions.assertEquals(3, result.getGenres().size());
+        Assertions.assertEquals(2, result.getDirectors().size());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void filmsPopular() {
         int usersCount = 10;
         int filmsCount = 5;
@@ -217,4 +383,215 @@ public class FilmStorageTest {
         }
         Assertions.assertEquals(maxLikes, films.getFirst().getLikes());
     }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void filmsPopularIndexMatchesSql() {
+        popularityIndex.rebuild();
+        int usersCount = 8;
+        int filmsCount = 12;
+        int[] userIds = new int[usersCount];
+        for (int i = 0; i < usersCount; i++) {
+            userIds[i] = userStorage.create(new UserBuilder().build()).getId();
+        }
+        LocalDate releaseDate = LocalDate.of(2001, 5, 17);
+        for (int i = 0; i < filmsCount; i++) {
+            Film film = filmStorage.create(new FilmBuilder()
+                    .releaseDate(i % 2 == 0 ? releaseDate : releaseDate.plusYears(1))
+                    .genres(1 + i % 3, 4)
+                    .build());
+            for (int j = 0; j < (i * 5) % usersCount; j++) {
+                filmStorage.addLike(film.getId(), userIds[j]);
+            }
+            if (i % 4 == 0) {
+                filmStorage.deleteLike(film.getId(), userIds[0]);
+            }
+        }
+        filmStorage.update(new FilmBuilder().id(filmStorage.getAll().iterator().next().getId())
+                .releaseDate(releaseDate).genres(2).build());
+
+        for (Integer genreId : new Integer[]{null, 1, 2, 4, 6}) {
+            for (String year : new String[]{null, "2001", "2002", "1990"}) {
+                List<Integer> expected = filmStorage.filmsPopularFromDb(genreId, year, 5).stream()
+                        .map(Film::getId).toList();
+                List<Integer> actual = filmStorage.filmsPopular(genreId, year, 5).stream()
+                        .map(Film::getId).toList();
+                Assertions.assertEquals(expected, actual, "genreId=" + genreId + ", year=" + year);
+            }
+        }
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rolledBackFilmIsNotIndexed() {
+        LocalDate releaseDate = LocalDate.of(1901, 1, 1);
+        Integer[] filmId = new Integer[1];
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmId[0] = filmStorage.create(new FilmBuilder().name("Rolledback").releaseDate(releaseDate).build())
+                    .getId();
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertFalse(popularityIndex.top(null, releaseDate.getYear(), Integer.MAX_VALUE)
+                .contains(filmId[0]));
+        Assertions.assertTrue(filmStorage.filmsPopular(null, "1901", 10).stream()
+                .noneMatch(film -> film.getId().equals(filmId[0])));
+        Assertions.assertTrue(filmStorage.filmSearch("rolledback", false, true, null, 0).isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void rolledBackLikeIsNotIndexed() {
+        int filmId = filmStorage.create(new FilmBuilder().build()).getId();
+        int userId = userStorage.create(new UserBuilder().build()).getId();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            filmStorage.addLike(filmId, userId);
+            status.setRollbackOnly();
+        });
+        filmStorage.addLike(filmId, userId);
+
+        Assertions.assertEquals(1, popularityIndex.likes(filmId));
+        Assertions.assertEquals(1, filmStorage.getById(filmId).getLikes());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void filmsSimilar() {
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+        int user1 = userStorage.create(new UserBuilder().build()).getId();
+        int user2 = userStorage.create(new UserBuilder().build()).getId();
+        int user3 = userStorage.create(new UserBuilder().build()).getId();
+
+        filmStorage.addLike(filmsIds.get(0), user1);
+        filmStorage.addLike(filmsIds.get(1), user1);
+        filmStorage.addLike(filmsIds.get(0), user2);
+        filmStorage.addLike(filmsIds.get(1), user2);
+        filmStorage.addLike(filmsIds.get(3), user2);
+        filmStorage.addLike(filmsIds.get(0), user3);
+        filmStorage.addLike(filmsIds.get(2), user3);
+        similarityModel.applyChanges();
+
+        Assertions.assertEquals(List.of(filmsIds.get(1), filmsIds.get(2), filmsIds.get(3)),
+                filmStorage.filmsSimilar(filmsIds.get(0), 10).stream().map(Film::getId).toList());
+        Assertions.assertEquals(List.of(filmsIds.get(1)),
+                filmStorage.filmsSimilar(filmsIds.get(0), 1).stream().map(Film::getId).toList());
+
+        filmStorage.deleteLike(filmsIds.get(2), user3);
+        similarityModel.applyChanges();
+        Assertions.assertEquals(List.of(filmsIds.get(1), filmsIds.get(3)),
+                filmStorage.filmsSimilar(filmsIds.get(0), 10).stream().map(Film::getId).toList());
+        Assertions.assertThrows(NotFoundException.class, () -> filmStorage.filmsSimilar(999, 10));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void filmsCommonOrderedByLikes() {
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+        int user = userStorage.create(new UserBuilder().build()).getId();
+        int friend = userStorage.create(new UserBuilder().build()).getId();
+        int other = userStorage.create(new UserBuilder().build()).getId();
+
+        filmStorage.addLike(filmsIds.get(0), user);
+        filmStorage.addLike(filmsIds.get(1), user);
+        filmStorage.addLike(filmsIds.get(2), user);
+        filmStorage.addLike(filmsIds.get(0), friend);
+        filmStorage.addLike(filmsIds.get(1), friend);
+        filmStorage.addLike(filmsIds.get(3), friend);
+        filmStorage.addLike(filmsIds.get(1), other);
+
+        Assertions.assertEquals(List.of(filmsIds.get(1), filmsIds.get(0)),
+                filmStorage.filmsCommon(user, friend).stream().map(Film::getId).toList());
+
+        filmStorage.deleteLike(filmsIds.get(1), friend);
+        Assertions.assertEquals(List.of(filmsIds.get(0)),
+                filmStorage.filmsCommon(user, friend).stream().map(Film::getId).toList());
+        Assertions.assertTrue(filmStorage.filmsCommon(user, other).stream().map(Film::getId).toList()
+                .contains(filmsIds.get(1)));
+        Assertions.assertThrows(NotFoundException.class, () -> filmStorage.filmsCommon(user, 999));
+    }
+
+    @Test
+    public void filmsCommonReportsAllMissingUsersInOneQuery() {
+        int user = userStorage.create(new UserBuilder().build()).getId();
+
+        statementRecorder.reset();
+        NotFoundException e = Assertions.assertThrows(NotFoundException.class,
+                () -> filmStorage.filmsCommon(List.of(user, 998, 999), 2));
+
+        Assertions.assertEquals("users with ids [998, 999] not found", e.getMessage());
+        Assertions.assertEquals(1, statementRecorder.getStatements().size());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void filmsCommonLikedByAtLeast() {
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+        List<Integer> usersIds = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            usersIds.add(userStorage.create(new UserBuilder().build()).getId());
+        }
+        for (int i = 0; i < 4; i++) {
+            filmStorage.addLike(filmsIds.get(0), usersIds.get(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            filmStorage.addLike(filmsIds.get(1), usersIds.get(i));
+        }
+        filmStorage.addLike(filmsIds.get(2), usersIds.get(3));
+
+        Assertions.assertEquals(List.of(filmsIds.get(0)),
+                filmStorage.filmsCommon(usersIds, 4).stream().map(Film::getId).toList());
+        Assertions.assertEquals(List.of(filmsIds.get(0), filmsIds.get(1)),
+                filmStorage.filmsCommon(usersIds, 3).stream().map(Film::getId).toList());
+        Assertions.assertEquals(filmsIds,
+                filmStorage.filmsCommon(usersIds, 1).stream().map(Film::getId).toList());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void repeatedLikeDoesNotReachDatabase() {
+        int filmId = filmStorage.create(new FilmBuilder().build()).getId();
+        int userId = userStorage.create(new UserBuilder().build()).getId();
+        filmStorage.addLike(filmId, userId);
+
+        statementRecorder.reset();
+        filmStorage.addLike(filmId, userId);
+
+        Assertions.assertTrue(statementRecorder.getStatements("INSERT INTO users_films_likes").isEmpty());
+        Assertions.assertEquals(1, popularityIndex.likes(filmId));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void filmSearch() {
+        Director director = directorStorage.create(new Director(null, "Searchable Director"));
+        Film byTitle = filmStorage.create(new FilmBuilder().name("Uniquetitle part one").build());
+        Film byTitleLiked = filmStorage.create(new FilmBuilder().name("Another uniquetitle").build());
+        Film byDirectorInput = new FilmBuilder().name("Unrelated").build();
+        byDirectorInput.setDirectors(Set.of(director));
+        Film byDirector = filmStorage.create(byDirectorInput);
+        filmStorage.addLike(byTitleLiked.getId(), userStorage.create(new UserBuilder().build()).getId());
+
+        List<Integer> titleResult = filmStorage.filmSearch("UNIQUETITLE", false, true, null, 0).stream()
+                .map(Film::getId).toList();
+        List<Integer> directorResult = filmStorage.filmSearch("searchable", true, false, null, 0).stream()
+                .map(Film::getId).toList();
+        List<Integer> pagedResult = filmStorage.filmSearch("uniquetitle", true, true, 1, 1).stream()
+                .map(Film::getId).toList();
+
+        Assertions.assertEquals(List.of(byTitleLiked.getId(), byTitle.getId()), titleResult);
+        Assertions.assertEquals(List.of(byDirector.getId()), directorResult);
+        Assertions.assertEquals(List.of(byTitle.getId()), pagedResult);
+        Assertions.assertTrue(filmStorage.filmSearch("uniquetitle", true, false, null, 0).isEmpty());
+    }
 }
@@ -0,0 +1,198 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestStatus;
+
+import java.util.Optional;
+import java.util.Random;
+
+/*
+Проверки FriendGraph. Нагрузочные тесты на больших случайных графах помечены тегом benchmark
+и в обычную сборку не входят; они запускаются профилем benchmarks, размер графа задается свойствами, например
+mvn test -Pbenchmarks -Dtest=FriendGraphTest -Dfriend-graph.users=1000000 -Dfriend-graph.requests-per-user=50
+(нужен -Xmx8g).
+ */
+@Slf4j
+public class FriendGraphTest {
+    private static final int USERS = Integer.getInteger("friend-graph.users", 100_000);
+    private static final int REQUESTS_PER_USER = Integer.getInteger("friend-graph.requests-per-user", 20);
+    private static final int QUERIES = 10_000;
+
+    @Test
+    @Tag("benchmark")
+    void friendsAndCommonFriendsOnLargeGraph() {
+        int requests = USERS * REQUESTS_PER_USER;
+        int[] userIds = new int[requests];
+        int[] friendIds = new int[requests];
+        boolean[] approved = new boolean[requests];
+        Random random = new Random(1);
+        for (int userId = 1, i = 0; userId <= USERS; userId++) {
+            for (int j = 0; j < REQUESTS_PER_USER; j++, i++) {
+                userIds[i] = userId;
+                // Заявки пользователя попадают в разные отрезки id, поэтому пары не повторяются
+                int segment = USERS / REQUESTS_PER_USER;
+                friendIds[i] = 1 + (userId + j * segment + random.nextInt(Math.max(1, segment - 1)) + 1) % USERS;
+                approved[i] = random.nextBoolean();
+            }
+        }
+
+        FriendGraph graph = new FriendGraph(null, 0);
+        long start = System.nanoTime();
+        graph.load(userIds, friendIds, approved);
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long friendsNanos = 0;
+        long commonNanos = 0;
+        long found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            int otherId = 1 + random.nextInt(USERS);
+            start = System.nanoTime();
+            int[] friends = graph.friends(userId);
+            friendsNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            found += graph.commonFriends(userId, otherId).length;
+            commonNanos += System.nanoTime() - start;
+            Assertions.assertTrue(friends.length >= REQUESTS_PER_USER);
+        }
+        log.info("Friend graph with {} users and {} requests: load {} ms, friends {} ns, common friends {} ns "
+                        + "per query, {} common friends found", USERS, requests, loadMillis, friendsNanos / QUERIES,
+                commonNanos / QUERIES, found);
+    }
+
+    @Test
+    void friendsFollowRequestStatuses() {
+        FriendGraph graph = new FriendGraph(null, 0);
+        graph.load(new int[0], new int[0], new boolean[0]);
+
+        graph.put(1, 2, FriendRequestStatus.UNAPPROVED);
+        graph.put(3, 1, FriendRequestStatus.UNAPPROVED);
+        graph.put(4, 1, FriendRequestStatus.APPROVED);
+        graph.put(2, 4, FriendRequestStatus.UNAPPROVED);
+
+        Assertions.assertArrayEquals(new int[]{2, 4}, graph.friends(1));
+        Assertions.assertArrayEquals(new int[]{4}, graph.friends(2));
+        Assertions.assertArrayEquals(new int[]{4}, graph.commonFriends(1, 2));
+        Assertions.assertEquals(Optional.of(FriendRequestStatus.APPROVED), graph.status(4, 1));
+        Assertions.assertEquals(Optional.empty(), graph.status(1, 4));
+
+        graph.put(3, 1, FriendRequestStatus.APPROVED);
+        Assertions.assertArrayEquals(new int[]{2, 3, 4}, graph.friends(1));
+
+        graph.removeUser(4);
+        Assertions.assertArrayEquals(new int[]{2, 3}, graph.friends(1));
+        Assertions.assertArrayEquals(new int[0], graph.friends(2));
+        Assertions.assertEquals(Optional.empty(), graph.status(2, 4));
+
+        graph.remove(1, 2);
+        Assertions.assertArrayEquals(new int[]{3}, graph.friends(1));
+    }
+
+    @Test
+    void suggestionsAreRankedByMutualFriends() {
+        FriendGraph graph = new FriendGraph(null, 0);
+        graph.load(new int[0], new int[0], new boolean[0]);
+        graph.put(1, 2, FriendRequestStatus.UNAPPROVED);
+        graph.put(1, 3, FriendRequestStatus.UNAPPROVED);
+        graph.put(2, 4, FriendRequestStatus.UNAPPROVED);
+        graph.put(3, 4, FriendRequestStatus.UNAPPROVED);
+        graph.put(2, 5, FriendRequestStatus.UNAPPROVED);
+        graph.put(2, 6, FriendRequestStatus.UNAPPROVED);
+        graph.put(6, 1, FriendRequestStatus.UNAPPROVED);
+        graph.put(3, 1, FriendRequestStatus.APPROVED);
+
+        Assertions.assertArrayEquals(new int[]{4, 5}, graph.suggestions(1, 10));
+        Assertions.assertArrayEquals(new int[]{4}, graph.suggestions(1, 1));
+
+        graph.put(1, 4, FriendRequestStatus.UNAPPROVED);
+        Assertions.assertArrayEquals(new int[]{5}, graph.suggestions(1, 10));
+    }
+
+    @Test
+    void pathIsShortestAndDepthBounded() {
+        FriendGraph graph = new FriendGraph(null, 0);
+        graph.load(new int[0], new int[0], new boolean[0]);
+        for (int userId = 1; userId < 8; userId++) {
+            graph.put(userId, userId + 1, FriendRequestStatus.APPROVED);
+        }
+        graph.put(9, 2, FriendRequestStatus.APPROVED);
+        graph.put(9, 5, FriendRequestStatus.APPROVED);
+        graph.put(1, 10, FriendRequestStatus.UNAPPROVED);
+
+        Assertions.assertArrayEquals(new int[]{1, 2, 9, 5, 6}, graph.path(1, 6));
+        Assertions.assertArrayEquals(new int[]{6, 5, 9, 2, 1}, graph.path(6, 1));
+        Assertions.assertArrayEquals(new int[]{3}, graph.path(3, 3));
+        Assertions.assertArrayEquals(new int[0], graph.path(1, 10));
+        Assertions.assertArrayEquals(new int[0], graph.path(1, 6, 3, 1000));
+
+        graph.remove(9, 5);
+        Assertions.assertArrayEquals(new int[]{1, 2, 3, 4, 5, 6}, graph.path(1, 6));
+        Assertions.assertArrayEquals(new int[0], graph.path(1, 8));
+    }
+
+    /*
+    Поиск пути на графе со степенным распределением числа друзей: каждый новый пользователь
+    дружит с REQUESTS_PER_USER / 2 уже существующими, выбранными пропорционально числу их друзей.
+    Граф создается без ограничения времени поиска, чтобы результат не зависел от загрузки машины.
+     */
+    @Test
+    @Tag("benchmark")
+    void pathOnPowerLawGraph() {
+        int links = REQUESTS_PER_USER / 2;
+        int requests = (USERS - links) * links;
+        int[] userIds = new int[requests];
+        int[] friendIds = new int[requests];
+        boolean[] approved = new boolean[requests];
+        // Каждый конец ребра записывается в endpoints, поэтому случайный элемент выбирается пропорционально степени
+        int[] endpoints = new int[requests * 2 + links];
+        int endpointsSize = 0;
+        for (int userId = 1; userId <= links; userId++) {
+            endpoints[endpointsSize++] = userId;
+        }
+        Random random = new Random(1);
+        int i = 0;
+        for (int userId = links + 1; userId <= USERS; userId++) {
+            int from = i;
+            while (i - from < links) {
+                int friendId = endpoints[random.nextInt(endpointsSize)];
+                boolean duplicate = false;
+                for (int j = from; j < i; j++) {
+                    duplicate |= friendIds[j] == friendId;
+                }
+                if (!duplicate) {
+                    userIds[i] = userId;
+                    friendIds[i] = friendId;
+                    approved[i] = true;
+                    i++;
+                }
+            }
+            for (int j = from; j < i; j++) {
+                endpoints[endpointsSize++] = userId;
+                endpoints[endpointsSize++] = friendIds[j];
+            }
+        }
+        FriendGraph graph = new FriendGraph(null, 0);
+        graph.load(userIds, friendIds, approved);
+
+        int queries = QUERIES / 10;
+        long nanos = 0;
+        long totalLength = 0;
+        for (int q = 0; q < queries; q++) {
+            int userId = 1 + random.nextInt(USERS);
+            int otherId = 1 + random.nextInt(USERS);
+            long start = System.nanoTime();
+            int[] path = graph.path(userId, otherId);
+            nanos += System.nanoTime() - start;
+            Assertions.assertTrue(path.length > 0);
+            Assertions.assertEquals(userId, path[0]);
+            Assertions.assertEquals(otherId, path[path.length - 1]);
+            totalLength += path.length - 1;
+        }
+        log.info("Power-law friend graph with {} users and {} requests: path {} us per query, average length {}",
+                USERS, requests, nanos / queries / 1000, (double) totalLength / queries);
+    }
+}
@@ -0,0 +1,228 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+Проверка планов запросов из пакета storage: на заполненной БД для каждого шаблона выполняется EXPLAIN,
+и ни одна из перечисленных для него таблиц не должна читаться полным просмотром (tableScan).
+Запросы по первичному ключу и полные выборки (перестроение индексов в памяти, сверка likes_count,
+очистка ленты по created_at) сюда не входят. Новый запрос с WHERE или JOIN по столбцу,
+не являющемуся первичным ключом, нужно добавить в queries().
+ */
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryPlanTest {
+    private static final int USERS = 500;
+    private static final int FILMS = 500;
+    private static final int DIRECTORS = 50;
+    private static final int LIKES_PER_USER = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("""
+                INSERT INTO users (id, email, login, name, birthday)
+                SELECT x, 'user' || x || '@mail.ru', 'user' || x, 'user' || x, DATE '1990-01-01'
+                  FROM SYSTEM_RANGE(1, ?)
+                """, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO films (id, name, description, release_date, duration, mpa_id)
+                SELECT x, 'film' || x, 'description', DATEADD(DAY, x, DATE '1990-01-01'), 90, MOD(x, 5) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO directors (id, name)
+                SELECT x, 'director' || x
+                  FROM SYSTEM_RANGE(1, ?)
+                """, DIRECTORS);
+        jdbcTemplate.update("""
+                INSERT INTO films_genres (film_id, genre_id)
+                SELECT x, MOD(x, 6) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO films_directors (film_id, director_id)
+                SELECT x, MOD(x, ?) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, DIRECTORS, FILMS);
+        jdbcTemplate.update("""
+                INSERT INTO users_films_likes (user_id, film_id)
+                SELECT u.x, MOD(u.x * 7 + l.x, ?) + 1
+                  FROM SYSTEM_RANGE(1, ?) u, SYSTEM_RANGE(1, ?) l
+                """, FILMS, USERS, LIKES_PER_USER);
+        jdbcTemplate.update("""
+                INSERT INTO users_friends_requests (user_id, friend_id, status)
+                SELECT x, MOD(x, ?) + 1, 'unapproved'
+                  FROM SYSTEM_RANGE(1, ?)
+                """, USERS, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO reviews (id, content, is_positive, user_id, film_id)
+                SELECT x, 'review', MOD(x, 2) = 0, x, MOD(x, ?) + 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, FILMS, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO users_reviews_ratings (user_id, review_id, score)
+                SELECT x, MOD(x * 3, ?) + 1, 1
+                  FROM SYSTEM_RANGE(1, ?)
+                """, USERS, USERS);
+        jdbcTemplate.update("""
+                INSERT INTO user_feeds (user_id, event_type, operation, entity_id, created_at)
+                SELECT MOD(x, ?) + 1, 'LIKE', 'ADD', MOD(x, ?) + 1, CURRENT_TIMESTAMP
+                  FROM SYSTEM_RANGE(1, ?)
+                """, USERS, FILMS, USERS * LIKES_PER_USER);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("queries")
+    void queryUsesIndexes(String name, String sql, List<String> indexedTables, Object[] args) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+
+        for (String table : indexedTables) {
+            Assertions.assertFalse(plan.toUpperCase().contains("PUBLIC." + table.toUpperCase() + ".TABLESCAN"),
+                    () -> String.format("%s scans table %s:%n%s", name, table, plan));
+        }
+    }
+
+    static Stream<Arguments> queries() {
+        return Stream.of(
+                query("likes of user",
+                        "SELECT film_id FROM users_films_likes WHERE user_id = ?",
+                        List.of("users_films_likes"), 1),
+                query("likes count decrement on user delete", """
+                                UPDATE films
+                                   SET likes_count = likes_count - 1
+                                 WHERE id IN (SELECT film_id
+                                                FROM users_films_likes
+                                               WHERE user_id = ?)
+                                """,
+                        List.of("films", "users_films_likes"), 1),
+                query("likes delete by user",
+                        "DELETE FROM users_films_likes WHERE user_id = ?",
+                        List.of("users_films_likes"), 1),
+                query("likes delete by film",
+                        "DELETE FROM users_films_likes WHERE film_id = ?",
+                        List.of("users_films_likes"), 1),
+                query("popular films of genre", String.format(FilmLoader.SELECT_FILMS_QUERY, """
+                                WHERE f.id IN
+                                     (
+                                     SELECT ff.id
+                                     FROM films ff
+                                     JOIN films_genres ffg ON ff.id = ffg.film_id
+                                     WHERE ffg.genre_id = 1
+                                     )
+                                """, "ORDER BY f.likes_count DESC, f.id LIMIT 10"),
+                        List.of("films_genres")),
+                query("films of director", String.format(FilmLoader.SELECT_FILMS_QUERY, """
+                                WHERE f.id IN (
+                                     SELECT film_id
+                                       FROM films_directors
+                                      WHERE director_id = ?
+                                     )
+                                """, "ORDER BY f.release_date"),
+                        List.of("films", "films_directors"), 1),
+                query("genres of films", """
+                                SELECT fg.film_id,
+                                       g.id,
+                                       g.name
+                                  FROM films_genres fg
+                                  JOIN genres g ON fg.genre_id = g.id
+                                 WHERE fg.film_id IN (?, ?, ?)
+                                """,
+                        List.of("films_genres"), 1, 2, 3),
+                query("directors of films", """
+                                SELECT fd.film_id,
+                                       d.id,
+                                       d.name
+                                  FROM films_directors fd
+                                  JOIN directors d ON fd.director_id = d.id
+                                 WHERE fd.film_id IN (?, ?, ?)
+                                """,
+                        List.of("films_directors"), 1, 2, 3),
+                query("film genre links",
+                        "SELECT genre_id FROM films_genres WHERE film_id = ?",
+                        List.of("films_genres"), 1),
+                query("film genre links delete",
+                        "DELETE FROM films_genres WHERE film_id = ? AND genre_id IN (?, ?)",
+                        List.of("films_genres"), 1, 2, 3),
+                query("director links delete",
+                        "DELETE FROM films_directors WHERE director_id = ?",
+                        List.of("films_directors"), 1),
+                query("reviews of film", """
+                                   SELECT r.id,
+                                          r.content,
+                                          r.is_positive,
+                                          r.user_id,
+                                          r.film_id,
+                                          COALESCE(SUM(urr.score), 0) AS useful
+                                     FROM reviews r
+                                LEFT JOIN users_reviews_ratings urr ON r.id = urr.review_id
+                                    WHERE r.film_id = ?
+                                    GROUP BY r.id
+                                    ORDER BY useful DESC
+                                    LIMIT 10
+                                """,
+                        List.of("reviews", "users_reviews_ratings"), 1),
+                query("reviews delete by film",
+                        "DELETE from reviews WHERE film_id = ?",
+                        List.of("reviews"), 1),
+                query("reviews delete by user",
+                        "DELETE from reviews WHERE user_id = ?",
+                        List.of("reviews"), 1),
+                query("review ratings delete by review",
+                        "DELETE FROM users_reviews_ratings WHERE review_id = ?",
+                        List.of("users_reviews_ratings"), 1),
+                query("review ratings delete by user",
+                        "DELETE FROM users_reviews_ratings WHERE user_id = ?",
+                        List.of("users_reviews_ratings"), 1),
+                query("review ratings delete by film", """
+                                DELETE
+                                  FROM users_reviews_ratings
+                                 WHERE review_id IN (
+                                    SELECT id
+                                      FROM reviews
+                                     WHERE film_id = ?
+                                 )
+                                """,
+                        List.of("users_reviews_ratings", "reviews"), 1),
+                query("feed page",
+                        "SELECT event_id, created_at, user_id, event_type, operation, entity_id "
+                                + "FROM user_feeds WHERE user_id = ? AND event_id > ? ORDER BY event_id LIMIT ?",
+                        List.of("user_feeds"), 1, 0, 10),
+                query("recent feed",
+                        "SELECT event_id, created_at, user_id, event_type, operation, entity_id "
+                                + "FROM user_feeds WHERE user_id = ? ORDER BY event_id DESC LIMIT ?",
+                        List.of("user_feeds"), 1, 10),
+                query("feed delete by user",
+                        "DELETE FROM user_feeds WHERE user_id = ?",
+                        List.of("user_feeds"), 1),
+                query("friend requests delete by user",
+                        "DELETE FROM users_friends_requests WHERE user_id = ?",
+                        List.of("users_friends_requests"), 1),
+                query("friend requests delete by friend",
+                        "DELETE FROM users_friends_requests WHERE friend_id = ?",
+                        List.of("users_friends_requests"), 1),
+                query("users by ids",
+                        "SELECT id, email, login, name, birthday FROM users WHERE id IN (?, ?, ?) ORDER BY id",
+                        List.of("users"), 1, 2, 3)
+        );
+    }
+
+    private static Arguments query(String name, String sql, List<String> indexedTables, Object... args) {
+        return Arguments.of(name, sql, indexedTables, args);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.recommendation.AlsModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+Сравнение стратегий рекомендаций на синтетических данных: пользователи разбиты на группы
+со своим набором фильмов, каждый лайкает часть фильмов группы и несколько случайных.
+Для MinHash/LSH качество — доля суммарного числа общих лайков точных соседей,
+которую набирают найденные приближенно соседи; для ALS — доля рекомендованных фильмов своей группы.
+ */
+@Slf4j
+public class RecommendationEngineTest {
+    private static final int USERS = 3000;
+    private static final int GROUPS = 30;
+    private static final int FILMS_PER_GROUP = 20;
+    private static final int GROUP_LIKES = 12;
+    private static final int RANDOM_LIKES = 3;
+    private static final int QUERIES = 300;
+    private static final int NEIGHBOURS = 10;
+
+    @Test
+    void minHashNeighboursAreCloseToExact() {
+        RecommendationEngine exact = engine("exact", "neighbours", null);
+        RecommendationEngine minHash = engine("minhash", "neighbours", null);
+        Random random = new Random(1);
+        for (int[] like : likes(new int[USERS + 1])) {
+            exact.addLike(like[0], like[1]);
+            minHash.addLike(like[0], like[1]);
+        }
+
+        long exactNanos = 0;
+        long minHashNanos = 0;
+        long exactOverlap = 0;
+        long minHashOverlap = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            long start = System.nanoTime();
+            List<RecommendationEngine.Neighbour> exactNeighbours = exact.neighbours(userId, NEIGHBOURS);
+            exactNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<RecommendationEngine.Neighbour> approximateNeighbours = minHash.neighbours(userId, NEIGHBOURS);
+            minHashNanos += System.nanoTime() - start;
+            exactOverlap += exactNeighbours.stream().mapToInt(RecommendationEngine.Neighbour::overlap).sum();
+            minHashOverlap += approximateNeighbours.stream().mapToInt(RecommendationEngine.Neighbour::overlap).sum();
+        }
+
+        double recall = (double) minHashOverlap / exactOverlap;
+        log.info("Neighbours search for {} users: exact {} us, minhash {} us per query, minhash recall {}",
+                USERS, exactNanos / QUERIES / 1000, minHashNanos / QUERIES / 1000, String.format("%.3f", recall));
+        Assertions.assertTrue(recall > 0.9, "minhash recall " + recall);
+    }
+
+    @Test
+    void alsRecommendsFilmsOfUserGroup() {
+        AlsModel alsModel = new AlsModel(null);
+        RecommendationEngine neighbours = engine("exact", "neighbours", null);
+        RecommendationEngine als = engine("exact", "als", alsModel);
+        int[] groups = new int[USERS + 1];
+        List<int[]> likes = likes(groups);
+        for (int[] like : likes) {
+            neighbours.addLike(like[0], like[1]);
+            als.addLike(like[0], like[1]);
+        }
+        long start = System.nanoTime();
+        alsModel.train(likes.stream().mapToInt(like -> like[0]).toArray(),
+                likes.stream().mapToInt(like -> like[1]).toArray());
+        long trainingMillis = (System.nanoTime() - start) / 1_000_000;
+
+        Random random = new Random(1);
+        long neighboursNanos = 0;
+        long alsNanos = 0;
+        int recommended = 0;
+        int fromGroup = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            start = System.nanoTime();
+            neighbours.recommend(userId);
+            neighboursNanos += System.nanoTime() - start;
+            start = System.nanoTime();
+            List<Integer> filmIds = als.recommend(userId).stream().limit(NEIGHBOURS).toList();
+            alsNanos += System.nanoTime() - start;
+            recommended += filmIds.size();
+            fromGroup += (int) filmIds.stream().filter(filmId -> group(filmId) == groups[userId]).count();
+        }
+
+        double precision = (double) fromGroup / recommended;
+        log.info("ALS training for {} likes: {} ms; recommendations: neighbours {} us, als {} us per query, "
+                        + "als group precision {}", likes.size(), trainingMillis, neighboursNanos / QUERIES / 1000,
+                alsNanos / QUERIES / 1000, String.format("%.3f", precision));
+        Assertions.assertTrue(precision > 0.8, "als group precision " + precision);
+    }
+
+    @Test
+    void unknownModesAreRejected() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> engine("cosine", "neighbours", null));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> engine("exact", "svd", null));
+    }
+
+    private static RecommendationEngine engine(String neighboursMode, String strategy, AlsModel alsModel) {
+        return new RecommendationEngine(null, new FilmSimilarityModel(null), alsModel, neighboursMode, strategy);
+    }
+
+    // Лайки в виде пар (userId, filmId); groups[userId] заполняется группой пользователя
+    private static List<int[]> likes(int[] groups) {
+        Random random = new Random(1);
+        List<int[]> likes = new ArrayList<>();
+        for (int userId = 1; userId <= USERS; userId++) {
+            int group = random.nextInt(GROUPS);
+            groups[userId] = group;
+            for (int i = 0; i < GROUP_LIKES; i++) {
+                likes.add(new int[]{userId, 1 + group * FILMS_PER_GROUP + random.nextInt(FILMS_PER_GROUP)});
+            }
+            for (int i = 0; i < RANDOM_LIKES; i++) {
+                likes.add(new int[]{userId, 1 + random.nextInt(GROUPS * FILMS_PER_GROUP)});
+            }
+        }
+        return likes;
+    }
+
+    private static int group(int filmId) {
+        return (filmId - 1) / FILMS_PER_GROUP;
+    }
+}
@@ -0,0 +1,81 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.FilmorateJdbcConfig;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Director;
+import ru.yandex.practicum.filmorate.storage.director.CachedDirectorStorage;
+import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.genre.CachedGenreStorage;
+import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.CachedMpaStorage;
+import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({
+        GenreDbStorage.class,
+        CachedGenreStorage.class,
+        MpaDbStorage.class,
+        CachedMpaStorage.class,
+        DirectorDbStorage.class,
+        CachedDirectorStorage.class,
+        FilmSearchIndex.class,
+        FilmorateJdbcConfig.class,
+})
+public class ReferenceDataCacheTest {
+    private final CachedGenreStorage genreStorage;
+    private final CachedMpaStorage mpaStorage;
+    private final CachedDirectorStorage directorStorage;
+
+    @Test
+    void genresAreServedFromCache() {
+        genreStorage.getAll();
+        long misses = genreStorage.getCounters().getMisses();
+        long hits = genreStorage.getCounters().getHits();
+
+        Assertions.assertEquals("Комедия", genreStorage.getById(1).getName());
+        genreStorage.checkGenreExists(6);
+
+        Assertions.assertEquals(misses, genreStorage.getCounters().getMisses());
+        Assertions.assertEquals(hits + 2, genreStorage.getCounters().getHits());
+        Assertions.assertThrows(NotFoundException.class, () -> genreStorage.checkGenreExists(999));
+    }
+
+    @Test
+    void mpaAreServedFromCache() {
+        mpaStorage.getAll();
+        long misses = mpaStorage.getCounters().getMisses();
+
+        Assertions.assertEquals("PG-13", mpaStorage.getById(3).getName());
+        Assertions.assertEquals(5, mpaStorage.getAll().size());
+
+        Assertions.assertEquals(misses, mpaStorage.getCounters().getMisses());
+        Assertions.assertThrows(NotFoundException.class, () -> mpaStorage.checkMpaExists(999));
+    }
+
+    @Test
+    void directorCacheIsInvalidatedOnChanges() {
+        Director director = directorStorage.create(new Director(null, "Name"));
+        directorStorage.getById(director.getId());
+        long misses = directorStorage.getCounters().getMisses();
+
+        directorStorage.checkDirectorExists(director.getId());
+        Assertions.assertEquals(misses, directorStorage.getCounters().getMisses());
+
+        directorStorage.update(new Director(director.getId(), "New name"));
+        Assertions.assertEquals("New name", directorStorage.getById(director.getId()).getName());
+        Assertions.assertTrue(directorStorage.getAll().contains(new Director(director.getId(), "New name")));
+
+        directorStorage.delete(director.getId());
+        Assertions.assertThrows(NotFoundException.class, () -> directorStorage.getById(director.getId()));
+    }
+}
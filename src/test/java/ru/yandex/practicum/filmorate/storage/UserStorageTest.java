@@ -1,25 +1,48 @@
 package ru.yandex.practicum.filmorate.storage;
 
 import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.yandex.practicum.filmorate.FilmorateJdbcConfig;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Recommendations;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.director.DirectorDbStorage;
+import ru.yandex.practicum.filmorate.storage.feed.FeedArchive;
 import ru.yandex.practicum.filmorate.storage.feed.FeedDbStorage;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmLoader;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikesIndex;
+import ru.yandex.practicum.filmorate.storage.friend_requests.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.friend_requests.FriendRequestDbStorage;
 import ru.yandex.practicum.filmorate.storage.genre.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.mpa.MpaDbStorage;
+import ru.yandex.practicum.filmorate.storage.recommendation.AlsModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.FilmSimilarityModel;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationEngine;
+import ru.yandex.practicum.filmorate.storage.recommendation.RecommendationStore;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.testdata.FilmBuilder;
+import ru.yandex.practicum.filmorate.testdata.StatementRecorder;
+import ru.yandex.practicum.filmorate.testdata.TestUtils;
 import ru.yandex.practicum.filmorate.testdata.UserBuilder;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
@@ -32,12 +55,44 @@ import java.util.List;
         MpaDbStorage.class,
         UserDbStorage.class,
         FriendRequestDbStorage.class,
+        FriendGraph.class,
         FilmorateJdbcConfig.class,
         DirectorDbStorage.class,
         FeedDbStorage.class,
+        FeedArchive.class,
+        FilmLoader.class,
+        FilmPopularityIndex.class,
+        FilmSearchIndex.class,
+        LikesIndex.class,
+        RecommendationEngine.class,
+        FilmSimilarityModel.class,
+        AlsModel.class,
+        RecommendationStore.class,
+        StatementRecorder.class,
 })
 public class UserStorageTest {
     private final UserDbStorage userStorage;
+    private final FilmDbStorage filmStorage;
+    private final RecommendationStore recommendationStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final StatementRecorder statementRecorder;
+    private final PlatformTransactionManager transactionManager;
+    private final FriendGraph friendGraph;
+
+    /*
+    Индексы в памяти обновляются только после фиксации, поэтому тесты индексов работают без транзакции
+    (NOT_SUPPORTED на методе) и фиксируют данные. После такого теста данные удаляются,
+    а индексы перестраиваются, чтобы они не влияли на остальные тесты общего контекста.
+     */
+    @AfterEach
+    void deleteCommittedData() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return;
+        }
+        TestUtils.deleteCommittedData(jdbcTemplate);
+        filmStorage.onApplicationReady();
+        friendGraph.rebuild();
+    }
 
     @Test
     void getUserById() {
@@ -115,6 +170,7 @@ public class UserStorageTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void addFriend() {
         User user1 = userStorage.create(new UserBuilder().build());
         User user2 = userStorage.create(new UserBuilder().build());
@@ -128,6 +184,7 @@ public class UserStorageTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void addFriendMutual() {
         User user1 = userStorage.create(new UserBuilder().build());
         User user2 = userStorage.create(new UserBuilder().build());
@@ -143,6 +200,22 @@ public class UserStorageTest {
         Assertions.assertTrue(user2Friends.contains(user1));
     }
 
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void rolledBackFriendRequestIsNotInGraph() {
+        User user1 = userStorage.create(new UserBuilder().build());
+        User user2 = userStorage.create(new UserBuilder().build());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            userStorage.addFriend(user1.getId(), user2.getId());
+            status.setRollbackOnly();
+        });
+
+        Assertions.assertTrue(userStorage.getFriends(user1.getId()).isEmpty());
+        userStorage.addFriend(user1.getId(), user2.getId());
+        Assertions.assertEquals(List.of(user2), List.copyOf(userStorage.getFriends(user1.getId())));
+    }
+
     @Test
     void deleteFriend() {
         User user1 = userStorage.create(new UserBuilder().build());
@@ -155,6 +228,7 @@ public class UserStorageTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void deleteAcceptedFriend() {
         User user1 = userStorage.create(new UserBuilder().build());
         User user2 = userStorage.create(new UserBuilder().build());
@@ -170,6 +244,36 @@ public class UserStorageTest {
     }
 
     @Test
+    void friendStateTransitionsTakeSingleStatement() {
+        int user1 = userStorage.create(new UserBuilder().build()).getId();
+        int user2 = userStorage.create(new UserBuilder().build()).getId();
+
+        assertFriendTransition(user1, user2, () -> userStorage.addFriend(user1, user2), user1, "unapproved");
+        assertFriendTransition(user1, user2, () -> userStorage.addFriend(user1, user2), user1, "unapproved");
+        assertFriendTransition(user1, user2, () -> userStorage.addFriend(user2, user1), user1, "approved");
+        assertFriendTransition(user1, user2, () -> userStorage.deleteFriend(user1, user2), user2, "unapproved");
+        assertFriendTransition(user1, user2, () -> userStorage.addFriend(user1, user2), user2, "approved");
+        assertFriendTransition(user1, user2, () -> userStorage.deleteFriend(user1, user2), user2, "unapproved");
+        assertFriendTransition(user1, user2, () -> userStorage.deleteFriend(user2, user1), null, null);
+        Assertions.assertTrue(userStorage.getFriends(user1).isEmpty());
+        Assertions.assertTrue(userStorage.getFriends(user2).isEmpty());
+    }
+
+    // Переход пары пользователей — один запрос к users_friends_requests; в таблице остается не больше одной строки
+    private void assertFriendTransition(int user1, int user2, Runnable transition, Integer requesterId, String status) {
+        statementRecorder.reset();
+        transition.run();
+        Assertions.assertEquals(1, statementRecorder.getStatements().stream()
+                .filter(sql -> sql.contains("users_friends_requests"))
+                .count());
+        List<String> rows = jdbcTemplate.query(
+                "SELECT user_id, status FROM users_friends_requests WHERE user_id IN (?, ?)",
+                (rs, rowNum) -> rs.getInt("user_id") + " " + rs.getString("status"), user1, user2);
+        Assertions.assertEquals(requesterId == null ? List.of() : List.of(requesterId + " " + status), rows);
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void getFriends() {
         User user = userStorage.create(new UserBuilder().build());
         List<User> friendsInput = List.of(
@@ -186,6 +290,7 @@ public class UserStorageTest {
     }
 
     @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     void getFriendsCommon() {
         User user1 = userStorage.create(new UserBuilder().build());
         User user2 = userStorage.create(new UserBuilder().build());
@@ -212,4 +317,63 @@ public class UserStorageTest {
         Assertions.assertEquals(3, commonFriends.size());
         Assertions.assertTrue(commonFriends.containsAll(List.of(friend2, friend3, friend4)));
     }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getRecommendationsMergesNeighbours() {
+        User user = userStorage.create(new UserBuilder().build());
+        User closeNeighbour = userStorage.create(new UserBuilder().build());
+        User farNeighbour = userStorage.create(new UserBuilder().build());
+        User stranger = userStorage.create(new UserBuilder().build());
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+
+        filmStorage.addLike(filmsIds.get(0), user.getId());
+        filmStorage.addLike(filmsIds.get(1), user.getId());
+        filmStorage.addLike(filmsIds.get(0), closeNeighbour.getId());
+        filmStorage.addLike(filmsIds.get(1), closeNeighbour.getId());
+        filmStorage.addLike(filmsIds.get(2), closeNeighbour.getId());
+        filmStorage.addLike(filmsIds.get(0), farNeighbour.getId());
+        filmStorage.addLike(filmsIds.get(3), farNeighbour.getId());
+        filmStorage.addLike(filmsIds.get(4), stranger.getId());
+
+        Assertions.assertEquals(List.of(filmsIds.get(2), filmsIds.get(3)),
+                userStorage.getRecommendations(user.getId()).getFilms().stream().map(Film::getId).toList());
+
+        filmStorage.addLike(filmsIds.get(2), user.getId());
+        filmStorage.deleteLike(filmsIds.get(3), farNeighbour.getId());
+        recommendationStore.refresh();
+        Assertions.assertTrue(userStorage.getRecommendations(user.getId()).getFilms().isEmpty());
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void getRecommendationsAreServedUntilRefresh() {
+        User user = userStorage.create(new UserBuilder().build());
+        User neighbour = userStorage.create(new UserBuilder().build());
+        List<Integer> filmsIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            filmsIds.add(filmStorage.create(new FilmBuilder().build()).getId());
+        }
+        filmStorage.addLike(filmsIds.get(0), user.getId());
+        filmStorage.addLike(filmsIds.get(0), neighbour.getId());
+        filmStorage.addLike(filmsIds.get(1), neighbour.getId());
+
+        Recommendations computed = userStorage.getRecommendations(user.getId());
+        Assertions.assertEquals(List.of(filmsIds.get(1)), computed.getFilms().stream().map(Film::getId).toList());
+
+        filmStorage.addLike(filmsIds.get(2), neighbour.getId());
+        Recommendations stale = userStorage.getRecommendations(user.getId());
+        Assertions.assertEquals(List.of(filmsIds.get(1)), stale.getFilms().stream().map(Film::getId).toList());
+        Assertions.assertEquals(computed.getComputedAt(), stale.getComputedAt());
+
+        filmStorage.addLike(filmsIds.get(1), user.getId());
+        Assertions.assertTrue(userStorage.getRecommendations(user.getId()).getFilms().isEmpty());
+
+        recommendationStore.refresh();
+        Assertions.assertEquals(List.of(filmsIds.get(2)),
+                userStorage.getRecommendations(user.getId()).getFilms().stream().map(Film::getId).toList());
+    }
 }
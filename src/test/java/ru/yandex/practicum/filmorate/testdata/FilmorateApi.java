@@ -8,6 +8,7 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Review;
 import ru.yandex.practicum.filmorate.model.User;
@@ -64,6 +65,37 @@ public class FilmorateApi {
         return mockMvc.perform(get("/users/{userId}/friends/common/{otherId}", userId, otherId));
     }
 
+    public ResultActions getFriendSuggestions(int userId) throws Exception {
+        return mockMvc.perform(get("/users/{userId}/friends/suggestions", userId));
+    }
+
+    public ResultActions getFriendshipPath(int userId, int otherId) throws Exception {
+        return mockMvc.perform(get("/users/{userId}/distance/{otherId}", userId, otherId));
+    }
+
+    public ResultActions getRecommendations(int userId) throws Exception {
+        return mockMvc.perform(get("/users/{userId}/recommendations", userId));
+    }
+
+    public ResultActions getUserFeed(int userId) throws Exception {
+        return mockMvc.perform(get("/users/{userId}/feed", userId));
+    }
+
+    public ResultActions getUserFeedPage(int userId, Integer after, Integer limit) throws Exception {
+        MockHttpServletRequestBuilder request = get("/users/{userId}/feed", userId);
+        if (after != null) {
+            request.queryParam("after", after.toString());
+        }
+        if (limit != null) {
+            request.queryParam("limit", limit.toString());
+        }
+        return mockMvc.perform(request);
+    }
+
+    public ResultActions getUserFeedSince(int userId, int since) throws Exception {
+        return mockMvc.perform(get("/users/{userId}/feed?since={since}", userId, since));
+    }
+
     public ResultActions getAllFilms() throws Exception {
         return mockMvc.perform(get("/films"));
     }
@@ -107,6 +139,18 @@ public class FilmorateApi {
         return mockMvc.perform(get("/films/common?userId={userId}&friendId={friendId}", userId, friendId));
     }
 
+    public ResultActions filmsCommon(String userIds, Integer minLikes) throws Exception {
+        MockHttpServletRequestBuilder request = get("/films/common").queryParam("userIds", userIds);
+        if (minLikes != null) {
+            request.queryParam("minLikes", minLikes.toString());
+        }
+        return mockMvc.perform(request);
+    }
+
+    public ResultActions filmsSimilar(int filmId) throws Exception {
+        return mockMvc.perform(get("/films/{filmId}/similar", filmId));
+    }
+
     public ResultActions getGenreById(int genreId) throws Exception {
         return mockMvc.perform(get("/genres/{genreId}", genreId));
     }
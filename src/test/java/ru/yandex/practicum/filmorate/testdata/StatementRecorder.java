@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.testdata;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestComponent;
+import org.springframework.util.ClassUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/*
+Оборачивает DataSource тестового контекста и запоминает SQL каждого подготовленного
+или созданного на соединении запроса. Используется для проверки количества запросов.
+ */
+@TestComponent
+public class StatementRecorder implements BeanPostProcessor {
+    private static final Set<String> STATEMENT_METHODS = Set.of("prepareStatement", "prepareCall", "createStatement");
+    private final List<String> statements = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof DataSource)) {
+            return bean;
+        }
+        return Proxy.newProxyInstance(bean.getClass().getClassLoader(), ClassUtils.getAllInterfaces(bean),
+                (proxy, method, args) -> {
+                    Object result = invoke(bean, method, args);
+                    return result instanceof Connection connection ? recording(connection) : result;
+                });
+    }
+
+    public synchronized void reset() {
+        statements.clear();
+        threads.clear();
+    }
+
+    public synchronized List<String> getStatements() {
+        return List.copyOf(statements);
+    }
+
+    // Запросы, выполненные в потоке thread, без запросов фоновых потоков
+    public synchronized List<String> getStatements(Thread thread) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < statements.size(); i++) {
+            if (threads.get(i) == thread) {
+                result.add(statements.get(i));
+            }
+        }
+        return result;
+    }
+
+    public List<String> getStatements(String prefix) {
+        return getStatements().stream()
+                .filter(sql -> sql.toUpperCase().startsWith(prefix.toUpperCase()))
+                .toList();
+    }
+
+    private synchronized void record(String sql) {
+        statements.add(sql.strip().replaceAll("\\s+", " "));
+        threads.add(Thread.currentThread());
+    }
+
+    private Connection recording(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (STATEMENT_METHODS.contains(method.getName())) {
+                        record(args != null && args.length > 0 && args[0] instanceof String sql ? sql : "");
+                    }
+                    return invoke(connection, method, args);
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package ru.yandex.practicum.filmorate.testdata;
 
 import org.junit.jupiter.api.Assertions;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 
@@ -17,4 +19,11 @@ public class TestUtils {
         Set<Integer> genresIds2 = film2.getGenres().stream().map(Genre::getId).collect(Collectors.toSet());
         Assertions.assertEquals(genresIds1, genresIds2);
     }
+
+    // Удаляет все данные, кроме справочников жанров и рейтингов, в порядке внешних ключей
+    public static void deleteCommittedData(JdbcTemplate jdbcTemplate) {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "users_reviews_ratings", "reviews", "user_feeds",
+                "users_films_likes", "users_friends_requests", "films_genres", "films_directors", "films",
+                "directors", "users");
+    }
 }